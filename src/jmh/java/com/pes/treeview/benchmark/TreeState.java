@@ -0,0 +1,99 @@
+package com.pes.treeview.benchmark;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.TreeGenerator;
+import com.pes.treeview.core.domain.TreeGenerator.Distribution;
+import com.pes.treeview.core.metrics.TreeMetrics;
+import com.pes.treeview.core.persistent.CacheTreeStorage;
+import com.pes.treeview.core.persistent.DBTreeStorage;
+import com.pes.treeview.core.persistent.DbChangeLog;
+import com.pes.treeview.core.persistent.DbTreeSeeder;
+import com.pes.treeview.core.service.ExportExecutor;
+import com.pes.treeview.core.service.ExportPool;
+import com.pes.treeview.core.service.TreeViewFacade;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+@State(Scope.Benchmark)
+public class TreeState {
+
+    static final int BATCH = 100;
+    static final int ROUNDS = 10;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"20"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanout;
+
+    @Param({"uniform"})
+    public String distribution;
+
+    @Param({"object", "compact"})
+    public String backend;
+
+    @Param({"false"})
+    public boolean parallelExport;
+
+    DBTreeStorage dbTreeStorage;
+    private TreeMetrics metrics;
+    private ExportPool exportPool;
+    private ExportExecutor exportExecutor;
+    List<DbNode> dbNodes;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TreeGenerator generator = new TreeGenerator(nodes, depth, fanout, Distribution.of(distribution), 12, 42);
+        metrics = new TreeMetrics();
+        dbTreeStorage = new DBTreeStorage(new DbChangeLog(false, ""), new DbTreeSeeder(generator), backend);
+        dbNodes = new ArrayList<>(nodes);
+        preOrder(dbTreeStorage.getTree(), dbNodes::add);
+        random = new Random(42);
+        exportPool = new ExportPool(parallelExport, 0);
+        exportExecutor = new ExportExecutor(false, 0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        exportPool.shutdown();
+        exportExecutor.shutdown();
+    }
+
+    void reset() {
+        dbTreeStorage.reset();
+        dbNodes.clear();
+        preOrder(dbTreeStorage.getTree(), dbNodes::add);
+    }
+
+    TreeViewFacade newFacade() {
+        return new TreeViewFacade(new CacheTreeStorage(null, metrics, 0), dbTreeStorage, exportPool, exportExecutor, metrics);
+    }
+
+    DbNode randomNode() {
+        return dbNodes.get(random.nextInt(dbNodes.size()));
+    }
+
+    List<DbNode> randomNodes() {
+        List<DbNode> sample = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            sample.add(randomNode());
+        }
+        return sample;
+    }
+
+    List<DbNode> distinctNodes(int count) {
+        List<DbNode> shuffled = new ArrayList<>(dbNodes);
+        Collections.shuffle(shuffled, random);
+        return shuffled.subList(0, count);
+    }
+}
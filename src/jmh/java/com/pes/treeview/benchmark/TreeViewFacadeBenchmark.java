@@ -0,0 +1,109 @@
+package com.pes.treeview.benchmark;
+
+import com.pes.treeview.core.domain.CacheNode;
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.service.TreeViewFacade;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeViewFacadeBenchmark {
+
+    @State(Scope.Thread)
+    public static class Workspace {
+
+        private final List<TreeViewFacade> facades = new ArrayList<>(TreeState.ROUNDS);
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(TreeState tree) {
+            facades.clear();
+            next = 0;
+            List<DbNode> sample = tree.distinctNodes(TreeState.BATCH * TreeState.ROUNDS);
+            for (int i = 0; i < TreeState.ROUNDS; i++) {
+                TreeViewFacade facade = tree.newFacade();
+                sample.subList(i * TreeState.BATCH, (i + 1) * TreeState.BATCH).forEach(facade::importToChache);
+                facades.add(facade);
+            }
+        }
+
+        TreeViewFacade next() {
+            return facades.get(next++ % facades.size());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExportWorkspace {
+
+        private final Workspace workspace = new Workspace();
+
+        @Setup(Level.Iteration)
+        public void setUp(TreeState tree) {
+            tree.reset();
+            workspace.setUp(tree);
+        }
+
+        TreeViewFacade next() {
+            return workspace.next();
+        }
+    }
+
+    @Benchmark
+    public Optional<DbNode> findNodeByGuid(TreeState tree) {
+        return tree.dbTreeStorage.findNode(tree.randomNode().getGuid());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TreeState.BATCH)
+    public TreeViewFacade importToChache(TreeState tree) {
+        TreeViewFacade facade = tree.newFacade();
+        tree.randomNodes().forEach(facade::importToChache);
+        return facade;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 10, batchSize = TreeState.ROUNDS)
+    @Measurement(iterations = 10, batchSize = TreeState.ROUNDS)
+    @OperationsPerInvocation(TreeState.BATCH)
+    public void addNewToCache(Workspace workspace) {
+        TreeViewFacade facade = workspace.next();
+        facade.getCacheTree().forEach(node -> facade.addNewToCache(node, "New node"));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 10, batchSize = TreeState.ROUNDS)
+    @Measurement(iterations = 10, batchSize = TreeState.ROUNDS)
+    @OperationsPerInvocation(TreeState.BATCH)
+    public void disableInCache(Workspace workspace) {
+        TreeViewFacade facade = workspace.next();
+        facade.getCacheTree().forEach(facade::disableInCache);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 10, batchSize = TreeState.ROUNDS)
+    @Measurement(iterations = 10, batchSize = TreeState.ROUNDS)
+    @OperationsPerInvocation(TreeState.BATCH)
+    public void exportCacheToDb(ExportWorkspace workspace, Blackhole blackhole) {
+        TreeViewFacade facade = workspace.next();
+        facade.getCacheTree().forEach(node -> {
+            ((CacheNode) node).setValue("Changed");
+            facade.addNewToCache(node, "New node");
+        });
+        blackhole.consume(facade.exportCacheToDb());
+    }
+}
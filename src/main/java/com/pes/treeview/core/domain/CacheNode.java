@@ -1,63 +1,104 @@
 package com.pes.treeview.core.domain;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @Getter
 public class CacheNode implements Node<CacheNode> {
 
     private final UUID guid;
-    private final CacheNode parent;
-    private final List<CacheNode> childs;
+    private CacheNode parent;
+    private final ChildList<CacheNode> childs;
     private String value;
-    private boolean enable;
-    private boolean visited;
+    @Getter(AccessLevel.NONE)
+    private final Tombstone tombstone;
     private boolean changed;
     private boolean copied;
+    private boolean moved;
+    private long version;
+    @Getter(AccessLevel.PACKAGE)
+    private final Consumer<CacheNode> changeListener;
 
-    CacheNode(String value, CacheNode parent, UUID originalGuid) {
+    CacheNode(String value, CacheNode parent, UUID originalGuid, Consumer<CacheNode> changeListener, TombstoneEpoch epoch) {
         guid = originalGuid;
-        childs = new ArrayList<>();
+        childs = new ChildList<>();
         this.value = value;
         this.parent = parent;
-        this.enable = true;
+        this.tombstone = new Tombstone(epoch);
+        this.changeListener = changeListener;
     }
 
     public void addChild(CacheNode node) {
-        boolean nodeIsPresented = childs.stream()
-                .anyMatch(child -> Objects.equals(child.getGuid(), node.guid));
+        childs.append(node);
+    }
 
-        if (!nodeIsPresented) {
-            childs.add(node);
-        }
+    public void removeChild(CacheNode node) {
+        childs.delete(node);
+    }
+
+    void setParent(CacheNode parent) {
+        this.parent = parent;
+        tombstone.invalidate();
+    }
+
+    TombstoneEpoch getEpoch() {
+        return tombstone.getEpoch();
     }
 
     public List<CacheNode> getChilds() {
-        return new ArrayList<>(childs);
+        return childs;
+    }
+
+    @Override
+    public List<CacheNode> getChilds(int offset, int limit) {
+        return childs.page(offset, limit);
+    }
+
+    @Override
+    public int getChildCount() {
+        return childs.size();
     }
 
     public void setValue(String value) {
         this.value = value;
         this.changed = true;
+        changeListener.accept(this);
+    }
+
+    public boolean isEnable() {
+        return Tombstone.isEnable(this, node -> node.tombstone);
     }
 
     public void setEnable(boolean enable) {
-        if (this.enable) {
-            this.enable = enable;
-            childs.forEach(node -> node.setEnable(enable));
+        if (!enable && isEnable()) {
+            tombstone.remove();
+            changeListener.accept(this);
         }
     }
 
-    public void setChanged(boolean changed) {
-        this.changed = changed;
+    public void refresh(String value, boolean enable) {
+        this.value = value;
+        if (!enable && isEnable()) {
+            tombstone.remove();
+        }
     }
 
-    public void setVisited(boolean visited) {
-        this.visited = visited;
+    public void setChanged(boolean changed) {
+        this.changed = changed;
     }
 
     public void setCopied(boolean copied) {
         this.copied = copied;
     }
+
+    public void setMoved(boolean moved) {
+        this.moved = moved;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
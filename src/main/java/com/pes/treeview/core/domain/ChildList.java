@@ -0,0 +1,117 @@
+package com.pes.treeview.core.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ChildList<T extends Node<T>> extends AbstractList<T> implements RandomAccess {
+
+    private static final Object[] EMPTY = new Object[0];
+    private static final int MIN_CAPACITY = 4;
+    private static final int INDEX_THRESHOLD = 32;
+
+    private volatile Object[] elements = EMPTY;
+    private volatile int size;
+    private volatile Map<UUID, T> index;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int position) {
+        int count = size;
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("Child " + position + " of " + count);
+        }
+        return (T) elements[position];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean containsGuid(UUID guid) {
+        Map<UUID, T> guids = index;
+        if (guids != null) {
+            return guids.containsKey(guid);
+        }
+
+        int count = size;
+        Object[] current = elements;
+        for (int i = 0; i < count; i++) {
+            if (((Node<?>) current[i]).getGuid().equals(guid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<T> page(int offset, int limit) {
+        int count = size;
+        int from = Math.min(Math.max(offset, 0), count);
+        return subList(from, (int) Math.min((long) from + Math.max(limit, 0), count));
+    }
+
+    synchronized boolean append(T node) {
+        if (containsGuid(node.getGuid())) {
+            return false;
+        }
+
+        int count = size;
+        Object[] current = elements;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, Math.max(MIN_CAPACITY, count * 2));
+        }
+        current[count] = node;
+        elements = current;
+
+        if (index != null) {
+            index.put(node.getGuid(), node);
+        } else if (count + 1 > INDEX_THRESHOLD) {
+            Map<UUID, T> guids = new ConcurrentHashMap<>(count * 2);
+            for (int i = 0; i <= count; i++) {
+                T child = get(current, i);
+                guids.put(child.getGuid(), child);
+            }
+            index = guids;
+        }
+        size = count + 1;
+        return true;
+    }
+
+    synchronized void appendAll(Collection<? extends T> nodes) {
+        int required = size + nodes.size();
+        if (required > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(MIN_CAPACITY, required));
+        }
+        nodes.forEach(this::append);
+    }
+
+    synchronized boolean delete(T node) {
+        int count = size;
+        Object[] current = elements;
+        for (int i = 0; i < count; i++) {
+            if (current[i] == node) {
+                Object[] copy = new Object[current.length];
+                System.arraycopy(current, 0, copy, 0, i);
+                System.arraycopy(current, i + 1, copy, i, count - i - 1);
+                size = count - 1;
+                elements = copy;
+                if (index != null) {
+                    index.remove(node.getGuid());
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(Object[] elements, int position) {
+        return (T) elements[position];
+    }
+}
@@ -0,0 +1,70 @@
+package com.pes.treeview.core.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExportConflict {
+
+    public enum Type {
+        CHANGED,
+        REMOVED,
+        PARENT_REMOVED,
+        CYCLE
+    }
+
+    private final Type type;
+    private final CacheNode node;
+    private final String cacheValue;
+    private final long expectedVersion;
+    @Getter(AccessLevel.NONE)
+    private final String dbValue;
+    @Getter(AccessLevel.NONE)
+    private final Long actualVersion;
+    @Getter(AccessLevel.NONE)
+    private final String removedAncestor;
+    @Getter(AccessLevel.NONE)
+    private final String newParent;
+
+    public UUID getGuid() {
+        return node.getGuid();
+    }
+
+    public Optional<String> getDbValue() {
+        return Optional.ofNullable(dbValue);
+    }
+
+    public OptionalLong getActualVersion() {
+        return actualVersion == null ? OptionalLong.empty() : OptionalLong.of(actualVersion);
+    }
+
+    public Optional<String> getRemovedAncestor() {
+        return Optional.ofNullable(removedAncestor);
+    }
+
+    public Optional<String> getNewParent() {
+        return Optional.ofNullable(newParent);
+    }
+
+    public static ExportConflict changed(CacheNode node, String cacheValue, long expectedVersion, DbNode dbNode) {
+        return new ExportConflict(Type.CHANGED, node, cacheValue, expectedVersion, dbNode.getValue(), dbNode.getVersion(), null, null);
+    }
+
+    public static ExportConflict removed(CacheNode node, String cacheValue, long expectedVersion, DbNode dbNode) {
+        return new ExportConflict(Type.REMOVED, node, cacheValue, expectedVersion, dbNode.getValue(), dbNode.getVersion(), null, null);
+    }
+
+    public static ExportConflict parentRemoved(CacheNode node, String cacheValue, long expectedVersion, String removedAncestor) {
+        return new ExportConflict(Type.PARENT_REMOVED, node, cacheValue, expectedVersion, null, null, removedAncestor, null);
+    }
+
+    public static ExportConflict cycle(CacheNode node, String cacheValue, long expectedVersion, DbNode newParent) {
+        return new ExportConflict(Type.CYCLE, node, cacheValue, expectedVersion, null, null, null, newParent.getValue());
+    }
+}
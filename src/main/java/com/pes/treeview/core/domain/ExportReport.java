@@ -0,0 +1,18 @@
+package com.pes.treeview.core.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class ExportReport {
+
+    private final int exported;
+    private final List<ExportConflict> conflicts;
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+}
@@ -1,38 +1,34 @@
 package com.pes.treeview.core.domain;
 
 import java.util.Collection;
-import java.util.Optional;
+import java.util.List;
 import java.util.UUID;
 
+import static java.util.stream.Collectors.toList;
+
 public interface Node<T extends Node> extends Comparable<T> {
 
     UUID getGuid();
 
     T getParent();
 
-    void addChild(T node);
-
     Collection<T> getChilds();
 
-    void setValue(String value);
+    default int getChildCount() {
+        return getChilds().size();
+    }
+
+    default List<T> getChilds(int offset, int limit) {
+        return getChilds().stream()
+                .skip(offset)
+                .limit(limit)
+                .collect(toList());
+    }
 
     String getValue();
 
     boolean isEnable();
 
-    boolean isVisited();
-
-    void setVisited(boolean visited);
-
-    void setEnable(boolean enable);
-
-    default Optional<T> findNotVisitedChild() {
-        return getChilds()
-                .stream()
-                .filter(cacheNode -> !cacheNode.isVisited())
-                .findFirst();
-    }
-
     @Override
     default int compareTo(T o) {
         return getGuid().compareTo(o.getGuid());
@@ -3,6 +3,7 @@ package com.pes.treeview.core.domain;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public final class Nodes {
 
@@ -10,11 +11,16 @@ public final class Nodes {
             String externalNodeValue,
             UUID externalNodeGuid,
             List<CacheNode> childs,
-            CacheNode parentNode
+            CacheNode parentNode,
+            Consumer<CacheNode> changeListener,
+            TombstoneEpoch epoch
     ) {
-        CacheNode newNode = new CacheNode(externalNodeValue, parentNode, externalNodeGuid);
+        CacheNode newNode = new CacheNode(externalNodeValue, parentNode, externalNodeGuid, changeListener, epoch);
         newNode.setCopied(true);
-        childs.forEach(newNode::addChild);
+        childs.forEach(child -> {
+            child.setParent(newNode);
+            newNode.addChild(child);
+        });
         return newNode;
     }
 
@@ -23,54 +29,76 @@ public final class Nodes {
             CacheNode parentNode
     ) {
         Objects.requireNonNull(parentNode);
-        return new CacheNode(externalNodeValue, parentNode, UUID.randomUUID());
+        CacheNode newNode = new CacheNode(externalNodeValue, parentNode, UUID.randomUUID(), parentNode.getChangeListener(), parentNode.getEpoch());
+        newNode.getChangeListener().accept(newNode);
+        return newNode;
+    }
+
+    public static void moveCacheNode(CacheNode node, CacheNode newParent) {
+        if (node.getParent() != null) {
+            node.getParent().removeChild(node);
+        }
+        node.setParent(newParent);
+        if (newParent != null) {
+            newParent.addChild(node);
+        }
+    }
+
+    public static void moveDbNode(ObjectDbNode node, ObjectDbNode newParent) {
+        node.getParent().removeChild(node);
+        node.setParent(newParent);
+        newParent.addChild(node);
     }
 
     public static DbNode newDefaultDbNode() {
         //Root level
-        DbNode root = new DbNode("root", null, UUID.randomUUID());
+        ObjectDbNode root = new ObjectDbNode("root", null, UUID.randomUUID());
         //Level 1
-        DbNode node11 = newDbNode("Node 1", root);
-        DbNode node12 = newDbNode("Node 2", root);
+        ObjectDbNode node11 = newDbNode("Node 1", root);
+        ObjectDbNode node12 = newDbNode("Node 2", root);
         root.addChild(node11);
         root.addChild(node12);
         //Level 2
-        DbNode node111 = newDbNode("Node 3", node11);
-        DbNode node112 = newDbNode("Node 4", node11);
-        DbNode node113 = newDbNode("Node 5", node11);
+        ObjectDbNode node111 = newDbNode("Node 3", node11);
+        ObjectDbNode node112 = newDbNode("Node 4", node11);
+        ObjectDbNode node113 = newDbNode("Node 5", node11);
         node11.addChild(node111);
         node11.addChild(node112);
         node11.addChild(node113);
-        DbNode node121 = newDbNode("Node 6", node12);
+        ObjectDbNode node121 = newDbNode("Node 6", node12);
         node12.addChild(node121);
         //Level 3
-        DbNode node1211 = newDbNode("Node 7", node121);
-        DbNode node1212 = newDbNode("Node 8", node121);
+        ObjectDbNode node1211 = newDbNode("Node 7", node121);
+        ObjectDbNode node1212 = newDbNode("Node 8", node121);
         node121.addChild(node1211);
         node121.addChild(node1212);
         //Level 4
-        DbNode node12111 = newDbNode("Node 9", node1211);
-        DbNode node12112 = newDbNode("Node 10", node1211);
-        DbNode node12113 = newDbNode("Node 11", node1211);
+        ObjectDbNode node12111 = newDbNode("Node 9", node1211);
+        ObjectDbNode node12112 = newDbNode("Node 10", node1211);
+        ObjectDbNode node12113 = newDbNode("Node 11", node1211);
         node1211.addChild(node12111);
         node1211.addChild(node12112);
         node1211.addChild(node12113);
 
         return root;
     }
-    private static DbNode newDbNode(
+    private static ObjectDbNode newDbNode(
             String value,
-            DbNode parentNode
+            ObjectDbNode parentNode
     ) {
-        return new DbNode(value, parentNode, UUID.randomUUID());
+        return new ObjectDbNode(value, parentNode, UUID.randomUUID());
+    }
+
+    public static ObjectDbNode newDbRoot(String value, UUID guid) {
+        return new ObjectDbNode(value, null, guid);
     }
 
-    public static DbNode newDbNodeFromExisted(
+    public static ObjectDbNode newDbNodeFromExisted(
             String value,
-            DbNode parentNode,
+            ObjectDbNode parentNode,
             UUID cacheNodeGuid
     ) {
         Objects.requireNonNull(parentNode);
-        return new DbNode(value, parentNode, cacheNodeGuid);
+        return new ObjectDbNode(value, parentNode, cacheNodeGuid);
     }
 }
@@ -0,0 +1,70 @@
+package com.pes.treeview.core.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+public class ObjectDbNode implements DbNode {
+
+    private final UUID guid;
+    private volatile ObjectDbNode parent;
+    private final ChildList<DbNode> childs;
+    private volatile String value;
+    private volatile long version;
+    @Getter(AccessLevel.NONE)
+    private final Tombstone tombstone;
+
+    ObjectDbNode(String value, ObjectDbNode parent, UUID guid) {
+        this.guid = guid;
+        childs = new ChildList<>();
+        this.value = value;
+        this.parent = parent;
+        this.tombstone = new Tombstone(parent != null ? parent.tombstone.getEpoch() : new TombstoneEpoch());
+    }
+
+    public void addChild(ObjectDbNode node) {
+        childs.append(node);
+    }
+
+    void addChilds(List<ObjectDbNode> nodes) {
+        childs.appendAll(nodes);
+    }
+
+    void removeChild(ObjectDbNode node) {
+        childs.delete(node);
+    }
+
+    void setParent(ObjectDbNode parent) {
+        this.parent = parent;
+        tombstone.invalidate();
+    }
+
+    @Override
+    public int getChildCount() {
+        return childs.size();
+    }
+
+    @Override
+    public List<DbNode> getChilds(int offset, int limit) {
+        return childs.page(offset, limit);
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+        version++;
+    }
+
+    public boolean isEnable() {
+        return Tombstone.isEnable(this, node -> ((ObjectDbNode) node).tombstone);
+    }
+
+    public void setEnable(boolean enable) {
+        if (!enable && isEnable()) {
+            tombstone.remove();
+            version++;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.pes.treeview.core.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@RequiredArgsConstructor
+public class SearchHit {
+
+    private final Node node;
+    private final List<Node> path;
+
+    public UUID getGuid() {
+        return node.getGuid();
+    }
+
+    public static <T extends Node<T>> SearchHit of(T node) {
+        LinkedList<Node> path = new LinkedList<>();
+        for (T current = node; current != null; current = current.getParent()) {
+            path.addFirst(current);
+        }
+        return new SearchHit(node, path);
+    }
+}
@@ -0,0 +1,59 @@
+package com.pes.treeview.core.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+final class Tombstone {
+
+    private final TombstoneEpoch epoch;
+    private volatile boolean removed;
+    private volatile long resolved;
+
+    Tombstone(TombstoneEpoch epoch) {
+        this.epoch = epoch;
+    }
+
+    TombstoneEpoch getEpoch() {
+        return epoch;
+    }
+
+    void remove() {
+        removed = true;
+        epoch.advance();
+    }
+
+    void invalidate() {
+        epoch.advance();
+    }
+
+    static <T extends Node<T>> boolean isEnable(T node, Function<T, Tombstone> tombstones) {
+        Tombstone first = tombstones.apply(node);
+        long epoch = first.epoch.current();
+        long own = first.resolved;
+        if (own >>> 1 == epoch) {
+            return (own & 1) == 1;
+        }
+
+        List<Tombstone> unresolved = new ArrayList<>();
+        boolean enable = true;
+        for (T current = node; current != null; current = current.getParent()) {
+            Tombstone tombstone = tombstones.apply(current);
+            long resolved = tombstone.resolved;
+            if (resolved >>> 1 == epoch) {
+                enable = (resolved & 1) == 1;
+                break;
+            }
+
+            unresolved.add(tombstone);
+            if (tombstone.removed) {
+                enable = false;
+                break;
+            }
+        }
+
+        long resolved = epoch << 1 | (enable ? 1 : 0);
+        unresolved.forEach(tombstone -> tombstone.resolved = resolved);
+        return enable;
+    }
+}
@@ -0,0 +1,16 @@
+package com.pes.treeview.core.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class TombstoneEpoch {
+
+    private final AtomicLong epoch = new AtomicLong(1);
+
+    long current() {
+        return epoch.get();
+    }
+
+    void advance() {
+        epoch.incrementAndGet();
+    }
+}
@@ -0,0 +1,153 @@
+package com.pes.treeview.core.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class TreeGenerator {
+
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    public enum Distribution {
+        UNIFORM,
+        SKEWED,
+        DEEP_CHAIN;
+
+        public static Distribution of(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final int nodes;
+    private final int depth;
+    private final int fanout;
+    private final Distribution distribution;
+    private final int valueLength;
+    private final long seed;
+
+    public TreeGenerator(int nodes, int depth, int fanout, Distribution distribution, int valueLength, long seed) {
+        if (nodes < 1 || depth < 1 || fanout < 1) {
+            throw new IllegalArgumentException("nodes, depth and fanout must be positive");
+        }
+        this.nodes = nodes;
+        this.depth = depth;
+        this.fanout = fanout;
+        this.distribution = distribution;
+        this.valueLength = valueLength;
+        this.seed = seed;
+    }
+
+    public DbNode generate() {
+        SplittableRandom random = new SplittableRandom(seed);
+        ObjectDbNode root = new ObjectDbNode("root", null, newGuid(random));
+        ForkJoinPool.commonPool().invoke(new Subtree(root, nodes - 1, 0, random));
+        return root;
+    }
+
+    private UUID newGuid(SplittableRandom random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    private String newValue(SplittableRandom random) {
+        char[] value = new char[valueLength];
+        for (int i = 0; i < valueLength; i++) {
+            value[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(value);
+    }
+
+    private long[] split(long budget, int childs) {
+        long[] shares = new long[childs];
+        if (budget == 0) {
+            return shares;
+        }
+
+        switch (distribution) {
+            case DEEP_CHAIN:
+                shares[0] = budget;
+                return shares;
+            case SKEWED:
+                double total = 0;
+                for (int i = 0; i < childs; i++) {
+                    total += 1.0 / (i + 1);
+                }
+                long assigned = 0;
+                for (int i = 0; i < childs; i++) {
+                    shares[i] = (long) (budget * (1.0 / (i + 1)) / total);
+                    assigned += shares[i];
+                }
+                shares[0] += budget - assigned;
+                return shares;
+            default:
+                for (int i = 0; i < childs; i++) {
+                    shares[i] = budget / childs + (i < budget % childs ? 1 : 0);
+                }
+                return shares;
+        }
+    }
+
+    private class Subtree extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ObjectDbNode root;
+        private final long budget;
+        private final int rootDepth;
+        private final SplittableRandom random;
+
+        Subtree(ObjectDbNode root, long budget, int rootDepth, SplittableRandom random) {
+            this.root = root;
+            this.budget = budget;
+            this.rootDepth = rootDepth;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            List<Subtree> forked = new ArrayList<>();
+            Deque<Subtree> local = new ArrayDeque<>();
+            local.push(this);
+
+            while (!local.isEmpty()) {
+                Subtree task = local.pop();
+                if (task.budget == 0) {
+                    continue;
+                }
+
+                int childDepth = task.rootDepth + 1;
+                int childs = childDepth >= depth ? (int) task.budget : (int) Math.min(fanout, task.budget);
+                long[] shares = split(task.budget - childs, childs);
+
+                List<ObjectDbNode> created = new ArrayList<>(childs);
+                for (int i = 0; i < childs; i++) {
+                    created.add(new ObjectDbNode(newValue(task.random), task.root, newGuid(task.random)));
+                }
+                task.root.addChilds(created);
+
+                boolean keptLarge = false;
+                for (int i = 0; i < childs; i++) {
+                    if (shares[i] >= PARALLEL_THRESHOLD) {
+                        Subtree subtree = new Subtree(created.get(i), shares[i], childDepth, task.random.split());
+                        if (keptLarge) {
+                            subtree.fork();
+                            forked.add(subtree);
+                        } else {
+                            local.push(subtree);
+                            keptLarge = true;
+                        }
+                    } else if (shares[i] > 0) {
+                        local.push(new Subtree(created.get(i), shares[i], childDepth, task.random));
+                    }
+                }
+            }
+
+            forked.forEach(RecursiveAction::join);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.pes.treeview.core.domain;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public final class Trees {
+
+    public static <T extends Node<T>> void preOrder(T tree, Consumer<? super T> visitor) {
+        findFirst(tree, node -> {
+            visitor.accept(node);
+            return false;
+        });
+    }
+
+    public static <T extends Node<T>> Optional<T> findFirst(T tree, Predicate<? super T> predicate) {
+        if (tree == null) {
+            return Optional.empty();
+        }
+
+        if (predicate.test(tree)) {
+            return Optional.of(tree);
+        }
+
+        Deque<Iterator<T>> stack = new ArrayDeque<>();
+        stack.push(tree.getChilds().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<T> childs = stack.peek();
+            if (!childs.hasNext()) {
+                stack.pop();
+                continue;
+            }
+
+            T node = childs.next();
+            if (predicate.test(node)) {
+                return Optional.of(node);
+            }
+            stack.push(node.getChilds().iterator());
+        }
+
+        return Optional.empty();
+    }
+
+    public static <T extends Node<T>> void postOrder(T tree, Consumer<? super T> visitor) {
+        if (tree == null) {
+            return;
+        }
+
+        Deque<T> nodes = new ArrayDeque<>();
+        Deque<Iterator<T>> stack = new ArrayDeque<>();
+        nodes.push(tree);
+        stack.push(tree.getChilds().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<T> childs = stack.peek();
+            if (childs.hasNext()) {
+                T node = childs.next();
+                nodes.push(node);
+                stack.push(node.getChilds().iterator());
+                continue;
+            }
+
+            stack.pop();
+            visitor.accept(nodes.pop());
+        }
+    }
+}
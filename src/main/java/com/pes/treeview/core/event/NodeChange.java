@@ -0,0 +1,15 @@
+package com.pes.treeview.core.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.UUID;
+
+@Getter
+@RequiredArgsConstructor
+public class NodeChange {
+
+    private final long sequence;
+    private final NodeEvent.Type type;
+    private final UUID guid;
+}
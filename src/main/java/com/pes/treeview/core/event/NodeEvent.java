@@ -0,0 +1,48 @@
+package com.pes.treeview.core.event;
+
+import com.pes.treeview.core.domain.Node;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class NodeEvent {
+
+    public enum Type {
+        ADDED,
+        VALUE_CHANGED,
+        DISABLED,
+        REPARENTED,
+        RELOADED,
+        RESET
+    }
+
+    private final Type type;
+    private final Node node;
+    private final Node previousParent;
+
+    public static NodeEvent added(Node node) {
+        return new NodeEvent(Type.ADDED, node, null);
+    }
+
+    public static NodeEvent valueChanged(Node node) {
+        return new NodeEvent(Type.VALUE_CHANGED, node, null);
+    }
+
+    public static NodeEvent disabled(Node node) {
+        return new NodeEvent(Type.DISABLED, node, null);
+    }
+
+    public static NodeEvent reparented(Node node, Node previousParent) {
+        return new NodeEvent(Type.REPARENTED, node, previousParent);
+    }
+
+    public static NodeEvent reloaded() {
+        return new NodeEvent(Type.RELOADED, null, null);
+    }
+
+    public static NodeEvent reset() {
+        return new NodeEvent(Type.RESET, null, null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.pes.treeview.core.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Slf4j
+public class NodeEvents {
+
+    public interface Subscription {
+        void remove();
+    }
+
+    private final List<Consumer<NodeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public Subscription subscribe(Consumer<NodeEvent> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    public void publish(NodeEvent event) {
+        for (Consumer<NodeEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.warn("Node event listener failed on " + event.getType() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.pes.treeview.core.metrics;
+
+import com.pes.treeview.core.persistent.CacheWorkspaces;
+import com.pes.treeview.core.persistent.DBTreeStorage;
+import com.pes.treeview.core.service.ExportExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@RequiredArgsConstructor
+@Component
+public class TreeGauges implements MeterBinder {
+
+    private final DBTreeStorage dbTreeStorage;
+    private final CacheWorkspaces cacheWorkspaces;
+    private final ExportExecutor exportExecutor;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("treeview.db.nodes", dbTreeStorage, DBTreeStorage::size)
+                .baseUnit("nodes")
+                .register(registry);
+        Gauge.builder("treeview.db.sequence", dbTreeStorage, DBTreeStorage::getSequence)
+                .baseUnit("changes")
+                .register(registry);
+        Gauge.builder("treeview.cache.nodes", cacheWorkspaces, CacheWorkspaces::nodeCount)
+                .baseUnit("nodes")
+                .register(registry);
+        Gauge.builder("treeview.cache.pending", cacheWorkspaces, CacheWorkspaces::pendingCount)
+                .baseUnit("nodes")
+                .register(registry);
+        Gauge.builder("treeview.cache.workspaces", cacheWorkspaces, workspaces -> workspaces.getWorkspaces().size())
+                .register(registry);
+        Gauge.builder("treeview.export.queued", exportExecutor, ExportExecutor::queued)
+                .baseUnit("exports")
+                .register(registry);
+    }
+}
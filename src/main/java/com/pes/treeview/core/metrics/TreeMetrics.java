@@ -0,0 +1,80 @@
+package com.pes.treeview.core.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Component
+public class TreeMetrics {
+
+    private final Timer importNode;
+    private final Timer importBatch;
+    private final Timer importSubtree;
+    private final Timer cacheAdd;
+    private final Timer cacheDisable;
+    private final Timer cacheMove;
+    private final Timer cacheSync;
+    private final Timer exportPush;
+    private final Timer exportRefresh;
+    private final Timer nodeLockWait;
+    private final Timer transactionLockWait;
+
+    private final DistributionSummary exportChanges;
+    private final DistributionSummary exportUnits;
+    private final DistributionSummary traversalImportSubtree;
+    private final DistributionSummary traversalExportPartition;
+    private final DistributionSummary traversalDbReindex;
+    private final DistributionSummary traversalCacheResync;
+    private final DistributionSummary syncChanges;
+
+    private final Counter exportConflicts;
+    private final Counter cacheEvicted;
+    private final Counter lookupCache;
+    private final Counter lookupDb;
+
+    public TreeMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public TreeMetrics(MeterRegistry registry) {
+        importNode = Timer.builder("treeview.import").tag("mode", "node").register(registry);
+        importBatch = Timer.builder("treeview.import").tag("mode", "batch").register(registry);
+        importSubtree = Timer.builder("treeview.import").tag("mode", "subtree").register(registry);
+        cacheAdd = Timer.builder("treeview.cache.add").register(registry);
+        cacheDisable = Timer.builder("treeview.cache.disable").register(registry);
+        cacheMove = Timer.builder("treeview.cache.move").register(registry);
+        cacheSync = Timer.builder("treeview.cache.sync").register(registry);
+        exportPush = Timer.builder("treeview.export").tag("phase", "push").register(registry);
+        exportRefresh = Timer.builder("treeview.export").tag("phase", "refresh").register(registry);
+        nodeLockWait = Timer.builder("treeview.lock.wait").tag("lock", "node").register(registry);
+        transactionLockWait = Timer.builder("treeview.lock.wait").tag("lock", "transaction").register(registry);
+
+        exportChanges = summary(registry, "treeview.export.changes", "nodes");
+        exportUnits = summary(registry, "treeview.export.units", "units");
+        traversalImportSubtree = traversal(registry, "import-subtree");
+        traversalExportPartition = traversal(registry, "export-partition");
+        traversalDbReindex = traversal(registry, "db-reindex");
+        traversalCacheResync = traversal(registry, "cache-resync");
+        syncChanges = summary(registry, "treeview.cache.sync.changes", "changes");
+
+        exportConflicts = Counter.builder("treeview.export.conflicts").baseUnit("nodes").register(registry);
+        cacheEvicted = Counter.builder("treeview.cache.evicted").baseUnit("nodes").register(registry);
+        lookupCache = Counter.builder("treeview.lookup").baseUnit("nodes").tag("store", "cache").register(registry);
+        lookupDb = Counter.builder("treeview.lookup").baseUnit("nodes").tag("store", "db").register(registry);
+    }
+
+    private static DistributionSummary summary(MeterRegistry registry, String name, String unit) {
+        return DistributionSummary.builder(name).baseUnit(unit).register(registry);
+    }
+
+    private static DistributionSummary traversal(MeterRegistry registry, String operation) {
+        return DistributionSummary.builder("treeview.traversal.nodes").baseUnit("nodes").tag("operation", operation).register(registry);
+    }
+}
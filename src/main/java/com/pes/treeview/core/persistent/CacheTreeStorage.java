@@ -1,60 +1,449 @@
 package com.pes.treeview.core.persistent;
 
 import com.pes.treeview.core.domain.CacheNode;
+import com.pes.treeview.core.domain.DbNode;
 import com.pes.treeview.core.domain.Node;
+import com.pes.treeview.core.domain.SearchHit;
+import com.pes.treeview.core.domain.TombstoneEpoch;
+import com.pes.treeview.core.event.NodeEvent;
+import com.pes.treeview.core.event.NodeEvents;
+import com.pes.treeview.core.metrics.TreeMetrics;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.spring.annotation.UIScope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.UUID;
+import javax.annotation.PreDestroy;
 
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.pes.treeview.core.domain.Nodes.moveCacheNode;
 import static com.pes.treeview.core.domain.Nodes.newCacheNodeFromExisted;
-import static java.util.stream.Collectors.toList;
+import static com.pes.treeview.core.domain.Trees.postOrder;
+import static com.pes.treeview.core.domain.Trees.preOrder;
 
+@Slf4j
+@UIScope
 @Component
 public class CacheTreeStorage {
 
+    private final UUID workspace;
+    private final CacheWorkspaces workspaces;
+    private final TreeMetrics metrics;
+    private final VaadinSession session;
+    private final int maxNodes;
+    private final TombstoneEpoch epoch;
     private Set<CacheNode> cache;
+    private Map<UUID, CacheNode> index;
+    private Set<CacheNode> changes;
+    private Map<UUID, List<CacheNode>> orphans;
+    private Map<UUID, UUID> orphanParents;
+    private Map<UUID, CacheNode> recent;
+    private Function<UUID, Optional<CacheNode>> reloader;
+    private ValueIndex values;
+    private Map<UUID, String> indexedValues;
+    private final NodeEvents events;
+    private boolean batching;
+    private long syncedSequence;
 
     public CacheTreeStorage() {
+        this(null, new TreeMetrics(), 0);
+    }
+
+    @Autowired
+    public CacheTreeStorage(CacheWorkspaces workspaces, TreeMetrics metrics, @Value("${tree-view.cache.max-nodes:0}") int maxNodes) {
+        this.workspace = UUID.randomUUID();
+        this.workspaces = workspaces;
+        this.metrics = metrics;
+        this.session = VaadinSession.getCurrent();
+        this.maxNodes = maxNodes;
+        this.epoch = new TombstoneEpoch();
         this.cache = new TreeSet<>();
+        this.index = new HashMap<>();
+        this.changes = new LinkedHashSet<>();
+        this.orphans = new HashMap<>();
+        this.orphanParents = new HashMap<>();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true);
+        this.reloader = guid -> Optional.empty();
+        this.values = new ValueIndex();
+        this.indexedValues = new HashMap<>();
+        this.events = new NodeEvents();
+        if (workspaces != null) {
+            workspaces.register(this);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (workspaces != null) {
+            workspaces.unregister(this);
+        }
+    }
+
+    public UUID getWorkspace() {
+        return workspace;
+    }
+
+    public VaadinSession getSession() {
+        return session;
+    }
+
+    public NodeEvents.Subscription subscribe(Consumer<NodeEvent> listener) {
+        return events.subscribe(listener);
+    }
+
+    public long getSyncedSequence() {
+        return syncedSequence;
+    }
+
+    public void setSyncedSequence(long syncedSequence) {
+        this.syncedSequence = syncedSequence;
     }
 
-    public void importToChache(Node externalNode, CacheNode parent, List<CacheNode> childs) {
+    public void setReloader(Function<UUID, Optional<CacheNode>> reloader) {
+        this.reloader = reloader;
+    }
+
+    public void importToChache(DbNode externalNode, CacheNode parent, List<CacheNode> childs) {
+        long version = externalNode.getVersion();
         CacheNode newCacheNode = newCacheNodeFromExisted(
                 externalNode.getValue(),
                 externalNode.getGuid(),
                 childs,
-                parent
+                parent,
+                this::markChanged,
+                epoch
         );
+        newCacheNode.setVersion(version);
 
         if (parent != null) {
             parent.addChild(newCacheNode);
-            newCacheNode.setEnable(parent.isEnable());
         } else {
-            cache.add(newCacheNode);
+            addRoot(newCacheNode, externalNode.getParent() == null ? null : externalNode.getParent().getGuid());
+        }
+        index.put(newCacheNode.getGuid(), newCacheNode);
+        indexValue(newCacheNode);
+        touch(newCacheNode);
+        publish(NodeEvent.added(newCacheNode));
+        childs.forEach(child -> publish(NodeEvent.reparented(child, null)));
+        if (!batching) {
+            evictOverBudget();
         }
     }
 
-    public void removeChildsFromCache(Node externalNode) {
-        cache.removeIf(cacheNode -> findChildsGuids(externalNode).contains(cacheNode.getGuid()));
+    public void batch(Runnable action) {
+        batching = true;
+        try {
+            action.run();
+        } finally {
+            batching = false;
+            evictOverBudget();
+            publish(NodeEvent.reloaded());
+        }
     }
 
-    public List<CacheNode> getChildsFromCache(Node externalNode) {
-        return cache.stream()
-                .filter(cacheNode -> findChildsGuids(externalNode).contains(cacheNode.getGuid()))
-                .collect(toList());
+    private void publish(NodeEvent event) {
+        if (!batching) {
+            events.publish(event);
+        }
+    }
+
+    public void addChild(CacheNode parent, CacheNode node) {
+        parent.addChild(node);
+        index.put(node.getGuid(), node);
+        indexValue(node);
+        publish(NodeEvent.added(node));
+    }
+
+    public void move(CacheNode node, CacheNode newParent) {
+        CacheNode previousParent = relink(node, newParent);
+        node.setMoved(true);
+        markChanged(node);
+        publish(NodeEvent.reparented(node, previousParent));
+    }
+
+    public void restore(CacheNode node, UUID dbParent) {
+        CacheNode parent = index.get(dbParent);
+        if (node.getParent() == parent && (parent != null || dbParent.equals(orphanParents.get(node.getGuid())))) {
+            node.setMoved(false);
+            return;
+        }
+
+        CacheNode previousParent = relink(node, parent);
+        if (parent == null) {
+            addRoot(node, dbParent);
+        }
+        node.setMoved(false);
+        publish(NodeEvent.reparented(node, previousParent));
+    }
+
+    private CacheNode relink(CacheNode node, CacheNode newParent) {
+        CacheNode previousParent = node.getParent();
+        if (previousParent == null) {
+            dropRoot(node);
+        }
+        moveCacheNode(node, newParent);
+        return previousParent;
+    }
+
+    private void addRoot(CacheNode root, UUID dbParent) {
+        cache.add(root);
+        recent.put(root.getGuid(), root);
+        if (dbParent != null) {
+            orphans.computeIfAbsent(dbParent, guid -> new ArrayList<>()).add(root);
+            orphanParents.put(root.getGuid(), dbParent);
+        }
+    }
+
+    private void dropRoot(CacheNode root) {
+        cache.remove(root);
+        recent.remove(root.getGuid());
+        UUID orphanParent = orphanParents.remove(root.getGuid());
+        List<CacheNode> siblings = orphanParent == null ? null : orphans.get(orphanParent);
+        if (siblings != null) {
+            siblings.remove(root);
+            if (siblings.isEmpty()) {
+                orphans.remove(orphanParent);
+            }
+        }
+    }
+
+    public void changeValue(CacheNode node, String value) {
+        if (!Objects.equals(node.getValue(), value)) {
+            node.setValue(value);
+            publish(NodeEvent.valueChanged(node));
+        }
+    }
+
+    public void disable(CacheNode node) {
+        if (node.isEnable()) {
+            node.setEnable(false);
+            preOrder(node, this::unindexValue);
+            publish(NodeEvent.disabled(node));
+        }
+    }
+
+    public void refresh(CacheNode node, String value, boolean enable, long version) {
+        boolean valueChanged = !Objects.equals(node.getValue(), value);
+        boolean disabled = node.isEnable() && !enable;
+
+        node.refresh(value, enable);
+        node.setVersion(version);
+        if (valueChanged) {
+            indexValue(node);
+            publish(NodeEvent.valueChanged(node));
+        }
+        if (disabled) {
+            preOrder(node, this::unindexValue);
+            publish(NodeEvent.disabled(node));
+        }
+    }
+
+    public int size() {
+        return index.size();
     }
 
-    private List<UUID> findChildsGuids(Node<?> node) {
-        return node.getChilds().stream()
-                .map(Node::getGuid)
-                .collect(toList());
+    public int pendingCount() {
+        return changes.size();
+    }
+
+    public boolean isPending(CacheNode node) {
+        return changes.contains(node);
+    }
+
+    public Optional<CacheNode> findNode(UUID guid) {
+        metrics.getLookupCache().increment();
+        return Optional.ofNullable(index.get(guid));
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        List<SearchHit> hits = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+
+        for (UUID guid : values.candidates(query)) {
+            if (hits.size() == limit) {
+                break;
+            }
+            if (seen.add(guid)) {
+                findNode(guid)
+                        .filter(CacheNode::isEnable)
+                        .filter(node -> ValueIndex.matches(node.getValue(), query))
+                        .ifPresent(node -> hits.add(SearchHit.of(node)));
+            }
+        }
+        return hits;
+    }
+
+    public void forEachNode(Consumer<CacheNode> action) {
+        new ArrayList<>(index.values()).forEach(action);
+    }
+
+    public void markPending(CacheNode node) {
+        markChanged(node);
+    }
+
+    private void markChanged(CacheNode node) {
+        if (node.isCopied() && index.get(node.getGuid()) != node) {
+            reload(node);
+            return;
+        }
+        changes.add(node);
+        indexValue(node);
+    }
+
+    private void reload(CacheNode evicted) {
+        reloader.apply(evicted.getGuid()).ifPresent(node -> {
+            if (evicted.isChanged() && !Objects.equals(node.getValue(), evicted.getValue())) {
+                node.setVersion(evicted.getVersion());
+                node.setValue(evicted.getValue());
+            }
+            if (!evicted.isEnable()) {
+                disable(node);
+            }
+        });
+    }
+
+    private void touch(CacheNode node) {
+        if (maxNodes > 0) {
+            recent.get(cacheRoot(node).getGuid());
+        }
+    }
+
+    private void evictOverBudget() {
+        if (maxNodes <= 0 || index.size() <= maxNodes) {
+            return;
+        }
+
+        int target = maxNodes - maxNodes / 10;
+        int before = index.size();
+        List<CacheNode> roots = new ArrayList<>(recent.values());
+        CacheNode latest = roots.get(roots.size() - 1);
+        for (CacheNode root : roots) {
+            if (index.size() <= target) {
+                break;
+            }
+            if (evictClean(root, target, root == latest)) {
+                dropRoot(root);
+                forget(root);
+            }
+        }
+
+        if (index.size() < before) {
+            metrics.getCacheEvicted().increment(before - index.size());
+            log.info("Evict from cache: " + (before - index.size()) + " clean nodes, " + index.size() + " left");
+            publish(NodeEvent.reloaded());
+        }
+    }
+
+    private boolean evictClean(CacheNode root, int target, boolean keepRoot) {
+        Set<CacheNode> cleanNodes = new HashSet<>();
+        postOrder(root, node -> {
+            boolean clean = !(keepRoot && node == root) && node.isCopied() && !node.isChanged() && node.isEnable() && !changes.contains(node);
+            List<CacheNode> cleanChilds = new ArrayList<>();
+            for (CacheNode child : node.getChilds()) {
+                if (cleanNodes.remove(child)) {
+                    cleanChilds.add(child);
+                } else {
+                    clean = false;
+                }
+            }
+
+            if (clean) {
+                cleanNodes.add(node);
+                return;
+            }
+            for (CacheNode child : cleanChilds) {
+                if (index.size() <= target) {
+                    break;
+                }
+                node.removeChild(child);
+                forget(child);
+            }
+        });
+        return cleanNodes.contains(root);
+    }
+
+    private void forget(CacheNode subtree) {
+        preOrder(subtree, node -> {
+            index.remove(node.getGuid());
+            unindexValue(node);
+        });
+    }
+
+    private void indexValue(CacheNode node) {
+        if (!node.isEnable()) {
+            unindexValue(node);
+            return;
+        }
+
+        String indexed = indexedValues.put(node.getGuid(), node.getValue());
+        if (!Objects.equals(indexed, node.getValue())) {
+            if (indexed != null) {
+                values.remove(node.getGuid(), indexed);
+            }
+            values.add(node.getGuid(), node.getValue());
+        }
+    }
+
+    private void unindexValue(CacheNode node) {
+        String indexed = indexedValues.remove(node.getGuid());
+        if (indexed != null) {
+            values.remove(node.getGuid(), indexed);
+        }
+    }
+
+    private static CacheNode cacheRoot(CacheNode node) {
+        CacheNode root = node;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
+    public List<CacheNode> pollChanges() {
+        List<CacheNode> polled = new ArrayList<>(changes);
+        polled.sort(Comparator.comparingInt(CacheTreeStorage::depth));
+        changes = new LinkedHashSet<>();
+        return polled;
+    }
+
+    private static int depth(CacheNode node) {
+        int depth = 0;
+        for (CacheNode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    public void removeChildsFromCache(Node externalNode) {
+        List<CacheNode> childs = orphans.remove(externalNode.getGuid());
+        if (childs != null) {
+            cache.removeAll(childs);
+            childs.forEach(child -> {
+                recent.remove(child.getGuid());
+                orphanParents.remove(child.getGuid());
+            });
+        }
+    }
+
+    public List<CacheNode> getChildsFromCache(Node externalNode) {
+        return new ArrayList<>(orphans.getOrDefault(externalNode.getGuid(), Collections.emptyList()));
     }
 
     public void reset() {
         cache = new TreeSet<>();
+        index = new HashMap<>();
+        changes = new LinkedHashSet<>();
+        orphans = new HashMap<>();
+        orphanParents = new HashMap<>();
+        recent = new LinkedHashMap<>(16, 0.75f, true);
+        values = new ValueIndex();
+        indexedValues = new HashMap<>();
+        events.publish(NodeEvent.reset());
     }
 
     public Set<CacheNode> getCache() {
@@ -0,0 +1,58 @@
+package com.pes.treeview.core.persistent;
+
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.WrappedSession;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toCollection;
+
+@Component
+public class CacheWorkspaces {
+
+    private final Map<UUID, CacheTreeStorage> workspaces = new ConcurrentHashMap<>();
+
+    void register(CacheTreeStorage storage) {
+        workspaces.put(storage.getWorkspace(), storage);
+    }
+
+    void unregister(CacheTreeStorage storage) {
+        workspaces.remove(storage.getWorkspace());
+    }
+
+    public Optional<CacheTreeStorage> find(UUID workspace, String sessionId) {
+        return Optional.ofNullable(workspaces.get(workspace))
+                .filter(storage -> isOwnedBy(storage, sessionId));
+    }
+
+    public Set<UUID> getWorkspaces() {
+        return new TreeSet<>(workspaces.keySet());
+    }
+
+    public Set<UUID> getWorkspaces(String sessionId) {
+        return workspaces.values().stream()
+                .filter(storage -> isOwnedBy(storage, sessionId))
+                .map(CacheTreeStorage::getWorkspace)
+                .collect(toCollection(TreeSet::new));
+    }
+
+    public int nodeCount() {
+        return workspaces.values().stream().mapToInt(CacheTreeStorage::size).sum();
+    }
+
+    public int pendingCount() {
+        return workspaces.values().stream().mapToInt(CacheTreeStorage::pendingCount).sum();
+    }
+
+    private static boolean isOwnedBy(CacheTreeStorage storage, String sessionId) {
+        VaadinSession session = storage.getSession();
+        WrappedSession wrapped = session == null ? null : session.getSession();
+        return wrapped != null && wrapped.getId().equals(sessionId);
+    }
+}
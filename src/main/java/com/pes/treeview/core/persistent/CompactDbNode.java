@@ -0,0 +1,95 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+class CompactDbNode implements DbNode {
+
+    private final CompactDbTree tree;
+    private final int index;
+
+    CompactDbNode(CompactDbTree tree, int index) {
+        this.tree = tree;
+        this.index = index;
+    }
+
+    CompactDbTree tree() {
+        return tree;
+    }
+
+    int index() {
+        return index;
+    }
+
+    @Override
+    public UUID getGuid() {
+        return tree.guid(index);
+    }
+
+    @Override
+    public DbNode getParent() {
+        int parent = tree.parent(index);
+        return parent == CompactDbTree.NONE ? null : new CompactDbNode(tree, parent);
+    }
+
+    @Override
+    public List<DbNode> getChilds() {
+        int[] childs = tree.childs(index);
+        List<DbNode> nodes = new ArrayList<>(childs.length);
+        for (int child : childs) {
+            nodes.add(new CompactDbNode(tree, child));
+        }
+        return nodes;
+    }
+
+    @Override
+    public List<DbNode> getChilds(int offset, int limit) {
+        int[] childs = tree.childs(index, offset, limit);
+        List<DbNode> nodes = new ArrayList<>(childs.length);
+        for (int child : childs) {
+            nodes.add(new CompactDbNode(tree, child));
+        }
+        return nodes;
+    }
+
+    @Override
+    public int getChildCount() {
+        return tree.childCount(index);
+    }
+
+    @Override
+    public String getValue() {
+        return tree.value(index);
+    }
+
+    @Override
+    public long getVersion() {
+        return tree.version(index);
+    }
+
+    @Override
+    public boolean isEnable() {
+        return tree.isEnabled(index);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CompactDbNode that = (CompactDbNode) o;
+        return index == that.index && tree == that.tree;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(tree), index);
+    }
+}
@@ -0,0 +1,751 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.CRC32;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+class CompactDbTree implements DbTree {
+
+    static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int VALUE_LENGTH_BITS = 24;
+    private static final long VALUE_LENGTH_MASK = (1L << VALUE_LENGTH_BITS) - 1;
+    static final int MAX_VALUE_SIZE = (int) VALUE_LENGTH_MASK;
+    private static final int SNAPSHOT_MAGIC = 0x54564442;
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int LEGACY_HEADER_SIZE = 24;
+    private static final int SNAPSHOT_HEADER_SIZE = 40;
+    private static final int SNAPSHOT_TRAILER_SIZE = Long.BYTES;
+    private static final int SNAPSHOT_CHUNK_SIZE = 1 << 20;
+    private static final int RECENT_VALUES = 1 << 12;
+    private static final int SEEK_THRESHOLD = 64;
+    private static final int SEEK_PARENTS = 256;
+
+    private final ReadWriteLock lock;
+    private int size;
+    private long[] guidMsb;
+    private long[] guidLsb;
+    private int[] parents;
+    private int[] firstChilds;
+    private int[] lastChilds;
+    private int[] nextSiblings;
+    private int[] prevSiblings;
+    private int[] childCounts;
+    private long[] values;
+    private long[] disabled;
+    private AtomicIntegerArray resolved;
+    private int[] versions;
+    private int epoch;
+    private int[] slots;
+    private byte[] heap;
+    private int heapSize;
+    private int heapGarbage;
+    private final int[] recentValues;
+    private final Map<Integer, ChildOrder> childOrders = new ConcurrentHashMap<>();
+    private DbChangeLog.Cut snapshotCut = DbChangeLog.Cut.START;
+
+    CompactDbTree(UUID rootGuid, String rootValue) {
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY * 16);
+        append(NONE, rootGuid, rootValue);
+    }
+
+    private CompactDbTree(int capacity, int heapCapacity) {
+        lock = new ReentrantReadWriteLock();
+        guidMsb = new long[capacity];
+        guidLsb = new long[capacity];
+        parents = new int[capacity];
+        firstChilds = new int[capacity];
+        lastChilds = new int[capacity];
+        nextSiblings = new int[capacity];
+        prevSiblings = new int[capacity];
+        childCounts = new int[capacity];
+        values = new long[capacity];
+        disabled = new long[capacity >> 6];
+        resolved = new AtomicIntegerArray(capacity);
+        versions = new int[capacity];
+        epoch = 1;
+        slots = new int[capacity * 2];
+        heap = new byte[heapCapacity];
+        recentValues = new int[RECENT_VALUES];
+    }
+
+    static CompactDbTree readSnapshot(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < LEGACY_HEADER_SIZE || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a db tree snapshot");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported db tree snapshot version");
+        }
+        if (version < 3) {
+            return readLegacySnapshot(buffer, version);
+        }
+
+        if (buffer.limit() < SNAPSHOT_HEADER_SIZE + SNAPSHOT_TRAILER_SIZE) {
+            throw new IOException("Truncated db tree snapshot");
+        }
+        int size = buffer.getInt();
+        int slotCount = buffer.getInt();
+        long heapSize = buffer.getLong();
+        DbChangeLog.Cut cut = new DbChangeLog.Cut(buffer.getLong(), buffer.getLong());
+        if (size < 1 || slotCount < 2 * INITIAL_CAPACITY || Integer.bitCount(slotCount) != 1 || slotCount < 2L * size ||
+                heapSize < 0 || heapSize > Integer.MAX_VALUE ||
+                buffer.limit() != snapshotLength(size, slotCount, heapSize)) {
+            throw new IOException("Inconsistent db tree snapshot header: " + size + " nodes, " + slotCount + " slots, " + heapSize + " heap bytes");
+        }
+
+        int bodyEnd = buffer.limit() - SNAPSHOT_TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        at(checked, 0).limit(bodyEnd);
+        crc.update(checked);
+        if (buffer.getLong(bodyEnd) != crc.getValue()) {
+            throw new IOException("Db tree snapshot checksum mismatch");
+        }
+
+        CompactDbTree tree = new CompactDbTree(slotCount / 2, Math.max((int) heapSize, INITIAL_CAPACITY * 16));
+        int position = SNAPSHOT_HEADER_SIZE;
+        position = readLongs(buffer, position, tree.guidMsb, size);
+        position = readLongs(buffer, position, tree.guidLsb, size);
+        position = readLongs(buffer, position, tree.values, size);
+        position = readLongs(buffer, position, tree.disabled, (size + 63) >> 6);
+        position = readInts(buffer, position, tree.parents, size);
+        position = readInts(buffer, position, tree.firstChilds, size);
+        position = readInts(buffer, position, tree.nextSiblings, size);
+        position = readInts(buffer, position, tree.slots, slotCount);
+        at(buffer, position).get(tree.heap, 0, (int) heapSize);
+
+        tree.size = size;
+        tree.heapSize = (int) heapSize;
+        tree.snapshotCut = cut;
+        tree.relinkSiblings();
+        return tree;
+    }
+
+    private static long snapshotLength(int size, int slotCount, long heapSize) {
+        return SNAPSHOT_HEADER_SIZE
+                + 3L * size * Long.BYTES
+                + (long) ((size + 63) >> 6) * Long.BYTES
+                + 3L * size * Integer.BYTES
+                + (long) slotCount * Integer.BYTES
+                + heapSize
+                + SNAPSHOT_TRAILER_SIZE;
+    }
+
+    private static CompactDbTree readLegacySnapshot(ByteBuffer buffer, int version) {
+        int size = buffer.getInt();
+        buffer.getInt();
+        int heapSize = (int) buffer.getLong();
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        CompactDbTree tree = new CompactDbTree(capacity, Math.max(heapSize, INITIAL_CAPACITY * 16));
+
+        int position = LEGACY_HEADER_SIZE;
+        position = readLongs(buffer, position, tree.guidMsb, size);
+        position = readLongs(buffer, position, tree.guidLsb, size);
+        position = readLongs(buffer, position, tree.values, size);
+        position = readLongs(buffer, position, tree.disabled, (size + 63) >> 6);
+        position = readInts(buffer, position, tree.parents, size);
+        if (version > 1) {
+            position = readInts(buffer, position, tree.firstChilds, size);
+            position = readInts(buffer, position, tree.nextSiblings, size);
+        }
+        at(buffer, position).get(tree.heap, 0, heapSize);
+
+        tree.heapSize = heapSize;
+        tree.size = size;
+        if (version > 1) {
+            tree.relinkSiblings();
+        } else {
+            Arrays.fill(tree.firstChilds, 0, size, NONE);
+            Arrays.fill(tree.lastChilds, 0, size, NONE);
+            Arrays.fill(tree.nextSiblings, 0, size, NONE);
+            for (int index = 0; index < size; index++) {
+                int parent = tree.parents[index];
+                if (parent != NONE) {
+                    tree.link(parent, index);
+                }
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            tree.insertSlot(index);
+        }
+        tree.countHeapGarbage();
+        return tree;
+    }
+
+    private void relinkSiblings() {
+        Arrays.fill(lastChilds, 0, size, NONE);
+        for (int parent = 0; parent < size; parent++) {
+            int previous = NONE;
+            for (int child = firstChilds[parent]; child != NONE; child = nextSiblings[child]) {
+                prevSiblings[child] = previous;
+                childCounts[parent]++;
+                previous = child;
+            }
+            lastChilds[parent] = previous;
+        }
+    }
+
+    private void countHeapGarbage() {
+        heapGarbage = heapSize;
+        for (int index = 0; index < size; index++) {
+            heapGarbage -= (int) (values[index] & VALUE_LENGTH_MASK);
+        }
+    }
+
+    DbChangeLog.Cut snapshotCut() {
+        return snapshotCut;
+    }
+
+    @Override
+    public Supplier<CompactDbTree> snapshot() {
+        CompactDbTree copy = read(() -> {
+            CompactDbTree frozen = new CompactDbTree(parents.length, Math.max(heapSize, INITIAL_CAPACITY * 16));
+            System.arraycopy(guidMsb, 0, frozen.guidMsb, 0, size);
+            System.arraycopy(guidLsb, 0, frozen.guidLsb, 0, size);
+            System.arraycopy(values, 0, frozen.values, 0, size);
+            System.arraycopy(disabled, 0, frozen.disabled, 0, (size + 63) >> 6);
+            System.arraycopy(parents, 0, frozen.parents, 0, size);
+            System.arraycopy(firstChilds, 0, frozen.firstChilds, 0, size);
+            System.arraycopy(nextSiblings, 0, frozen.nextSiblings, 0, size);
+            System.arraycopy(slots, 0, frozen.slots, 0, slots.length);
+            System.arraycopy(heap, 0, frozen.heap, 0, heapSize);
+            frozen.size = size;
+            frozen.heapSize = heapSize;
+            frozen.heapGarbage = heapGarbage;
+            return frozen;
+        });
+        return () -> copy;
+    }
+
+    void writeSnapshot(WritableByteChannel channel, DbChangeLog.Cut cut) throws IOException {
+        write(() -> {
+            if (heapGarbage > 0) {
+                compactHeap();
+            }
+            return null;
+        });
+
+        lock.readLock().lock();
+        try {
+            CRC32 crc = new CRC32();
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(size).putInt(slots.length).putLong(heapSize)
+                    .putLong(cut.epoch).putLong(cut.position);
+            header.flip();
+            writeFully(channel, header, crc);
+
+            writeLongs(channel, guidMsb, size, crc);
+            writeLongs(channel, guidLsb, size, crc);
+            writeLongs(channel, values, size, crc);
+            writeLongs(channel, disabled, (size + 63) >> 6, crc);
+            writeInts(channel, parents, size, crc);
+            writeInts(channel, firstChilds, size, crc);
+            writeInts(channel, nextSiblings, size, crc);
+            writeInts(channel, slots, slots.length, crc);
+            writeFully(channel, ByteBuffer.wrap(heap, 0, heapSize), crc);
+
+            ByteBuffer trailer = ByteBuffer.allocate(SNAPSHOT_TRAILER_SIZE);
+            trailer.putLong(crc.getValue());
+            trailer.flip();
+            writeFully(channel, trailer, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static CompactDbTree copyOf(DbNode root) {
+        CompactDbTree tree = new CompactDbTree(root.getGuid(), root.getValue());
+        preOrder(root, node -> {
+            int index = node.getParent() == null ?
+                    0 :
+                    tree.append(tree.indexOf(node.getParent().getGuid()), node.getGuid(), node.getValue());
+            if (!node.isEnable() && (node.getParent() == null || node.getParent().isEnable())) {
+                tree.disable(index);
+            }
+        });
+        return tree;
+    }
+
+    @Override
+    public DbNode getRoot() {
+        return new CompactDbNode(this, 0);
+    }
+
+    @Override
+    public Optional<DbNode> find(UUID guid) {
+        int index = read(() -> indexOf(guid));
+        return index == NONE ? Optional.empty() : Optional.of(new CompactDbNode(this, index));
+    }
+
+    @Override
+    public DbNode addChild(DbNode parent, UUID guid, String value) {
+        return write(() -> {
+            int existed = indexOf(guid);
+            int index = existed != NONE ? existed : append(indexOf(parent.getGuid()), guid, value);
+            return new CompactDbNode(this, index);
+        });
+    }
+
+    @Override
+    public void move(DbNode node, DbNode newParent) {
+        write(() -> {
+            int index = indexOf(node.getGuid());
+            int parent = indexOf(newParent.getGuid());
+            if (parents[index] != parent) {
+                unlink(parents[index], index);
+                parents[index] = parent;
+                link(parent, index);
+                epoch++;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void setValue(DbNode node, String value) {
+        setValue(index(node), value);
+    }
+
+    @Override
+    public void disable(DbNode node) {
+        disable(index(node));
+    }
+
+    private int index(DbNode node) {
+        if (node instanceof CompactDbNode && ((CompactDbNode) node).tree() == this) {
+            return ((CompactDbNode) node).index();
+        }
+        int index = index(node.getGuid());
+        if (index == NONE) {
+            throw new IllegalArgumentException("Unknown node: " + node.getGuid());
+        }
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return read(() -> size);
+    }
+
+    int index(UUID guid) {
+        return read(() -> indexOf(guid));
+    }
+
+    UUID guid(int index) {
+        return read(() -> new UUID(guidMsb[index], guidLsb[index]));
+    }
+
+    int parent(int index) {
+        return read(() -> parents[index]);
+    }
+
+    int childCount(int index) {
+        return read(() -> childCounts[index]);
+    }
+
+    int[] childs(int index) {
+        return read(() -> {
+            int[] childs = new int[childCounts[index]];
+            int child = firstChilds[index];
+            for (int i = 0; child != NONE; i++, child = nextSiblings[child]) {
+                childs[i] = child;
+            }
+            return childs;
+        });
+    }
+
+    int[] childs(int index, int offset, int limit) {
+        return read(() -> {
+            int from = Math.min(Math.max(offset, 0), childCounts[index]);
+            int[] childs = new int[(int) Math.min(Math.max(limit, 0), (long) childCounts[index] - from)];
+            if (from > 0 && childCounts[index] >= SEEK_THRESHOLD) {
+                System.arraycopy(childOrder(index).slots, from, childs, 0, childs.length);
+                return childs;
+            }
+
+            int child = firstChilds[index];
+            for (int skipped = 0; skipped < from; skipped++) {
+                child = nextSiblings[child];
+            }
+            for (int i = 0; i < childs.length; i++, child = nextSiblings[child]) {
+                childs[i] = child;
+            }
+            return childs;
+        });
+    }
+
+    private ChildOrder childOrder(int parent) {
+        ChildOrder order = childOrders.get(parent);
+        if (order == null) {
+            if (childOrders.size() >= SEEK_PARENTS) {
+                childOrders.clear();
+            }
+            order = new ChildOrder(childCounts[parent]);
+            for (int child = firstChilds[parent]; child != NONE; child = nextSiblings[child]) {
+                order.append(child);
+            }
+            childOrders.put(parent, order);
+        }
+        return order;
+    }
+
+    String value(int index) {
+        return read(() -> {
+            long value = values[index];
+            return new String(heap, (int) (value >>> VALUE_LENGTH_BITS), (int) (value & VALUE_LENGTH_MASK), StandardCharsets.UTF_8);
+        });
+    }
+
+    boolean isEnabled(int index) {
+        return read(() -> {
+            int own = resolved.get(index);
+            if (own >>> 1 == epoch) {
+                return (own & 1) == 1;
+            }
+
+            boolean enable = true;
+            int stop = NONE;
+            for (int node = index; node != NONE; node = parents[node]) {
+                int resolution = resolved.get(node);
+                if (resolution >>> 1 == epoch) {
+                    enable = (resolution & 1) == 1;
+                    stop = node;
+                    break;
+                }
+                if ((disabled[node >> 6] & (1L << node)) != 0) {
+                    enable = false;
+                    stop = parents[node];
+                    break;
+                }
+            }
+
+            int resolution = epoch << 1 | (enable ? 1 : 0);
+            for (int node = index; node != stop; node = parents[node]) {
+                resolved.lazySet(node, resolution);
+            }
+            return enable;
+        });
+    }
+
+    long version(int index) {
+        return read(() -> versions[index]);
+    }
+
+    int appendChild(int parent, UUID guid, String value) {
+        return write(() -> append(parent, guid, value));
+    }
+
+    void setValue(int index, String value) {
+        write(() -> {
+            long previous = values[index];
+            values[index] = writeValue(index, value);
+            if (values[index] != previous) {
+                heapGarbage += (int) (previous & VALUE_LENGTH_MASK);
+            }
+            if (heapGarbage > heapSize / 2) {
+                compactHeap();
+            }
+            return ++versions[index];
+        });
+    }
+
+    void disable(int index) {
+        write(() -> {
+            if ((disabled[index >> 6] & 1L << index) == 0) {
+                disabled[index >> 6] |= 1L << index;
+                versions[index]++;
+                epoch++;
+            }
+            return null;
+        });
+    }
+
+    private int append(int parent, UUID guid, String value) {
+        ensureCapacity(size + 1);
+        int index = size;
+        guidMsb[index] = guid.getMostSignificantBits();
+        guidLsb[index] = guid.getLeastSignificantBits();
+        parents[index] = parent;
+        firstChilds[index] = NONE;
+        lastChilds[index] = NONE;
+        nextSiblings[index] = NONE;
+        childCounts[index] = 0;
+        values[index] = writeValue(index, value);
+
+        if (parent != NONE) {
+            link(parent, index);
+        }
+
+        size++;
+        insertSlot(index);
+        return index;
+    }
+
+    private void link(int parent, int index) {
+        if (lastChilds[parent] == NONE) {
+            firstChilds[parent] = index;
+        } else {
+            nextSiblings[lastChilds[parent]] = index;
+        }
+        prevSiblings[index] = lastChilds[parent];
+        nextSiblings[index] = NONE;
+        lastChilds[parent] = index;
+        childCounts[parent]++;
+
+        ChildOrder order = childOrders.get(parent);
+        if (order != null) {
+            order.append(index);
+        }
+    }
+
+    private void unlink(int parent, int index) {
+        int previous = prevSiblings[index];
+        int next = nextSiblings[index];
+        if (previous == NONE) {
+            firstChilds[parent] = next;
+        } else {
+            nextSiblings[previous] = next;
+        }
+        if (next == NONE) {
+            lastChilds[parent] = previous;
+        } else {
+            prevSiblings[next] = previous;
+        }
+        childCounts[parent]--;
+        childOrders.remove(parent);
+    }
+
+    private static int readLongs(ByteBuffer buffer, int position, long[] target, int count) {
+        at(buffer, position).asLongBuffer().get(target, 0, count);
+        return position + count * Long.BYTES;
+    }
+
+    private static int readInts(ByteBuffer buffer, int position, int[] target, int count) {
+        at(buffer, position).asIntBuffer().get(target, 0, count);
+        return position + count * Integer.BYTES;
+    }
+
+    private static ByteBuffer at(ByteBuffer buffer, int position) {
+        Buffer seek = buffer;
+        seek.position(position);
+        return buffer;
+    }
+
+    private static void writeInts(WritableByteChannel channel, int[] source, int count, CRC32 crc) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(SNAPSHOT_CHUNK_SIZE);
+        for (int from = 0; from < count; ) {
+            int length = Math.min(count - from, SNAPSHOT_CHUNK_SIZE / Integer.BYTES);
+            chunk.clear();
+            chunk.asIntBuffer().put(source, from, length);
+            chunk.limit(length * Integer.BYTES);
+            writeFully(channel, chunk, crc);
+            from += length;
+        }
+    }
+
+    private static void writeLongs(WritableByteChannel channel, long[] source, int count, CRC32 crc) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(SNAPSHOT_CHUNK_SIZE);
+        for (int from = 0; from < count; ) {
+            int length = Math.min(count - from, SNAPSHOT_CHUNK_SIZE / Long.BYTES);
+            chunk.clear();
+            chunk.asLongBuffer().put(source, from, length);
+            chunk.limit(length * Long.BYTES);
+            writeFully(channel, chunk, crc);
+            from += length;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        if (crc != null) {
+            crc.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private int indexOf(UUID guid) {
+        long msb = guid.getMostSignificantBits();
+        long lsb = guid.getLeastSignificantBits();
+        int mask = slots.length - 1;
+
+        for (int slot = hash(msb, lsb) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (guidMsb[index] == msb && guidLsb[index] == lsb) {
+                return index;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertSlot(int index) {
+        int mask = slots.length - 1;
+        int slot = hash(guidMsb[index], guidLsb[index]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private long writeValue(int index, String value) {
+        byte[] bytes = encode(value);
+        int recent = hashValue(bytes, 0, bytes.length) & (RECENT_VALUES - 1);
+        int holder = recentValues[recent] - 1;
+        if (holder != NONE && sameValue(values[holder], heap, bytes, 0, bytes.length)) {
+            return values[holder];
+        }
+
+        recentValues[recent] = index + 1;
+        return writeValue(bytes);
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("Value is too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private void compactHeap() {
+        long referenced = 0;
+        for (int index = 0; index < size; index++) {
+            referenced += values[index] & VALUE_LENGTH_MASK;
+        }
+        byte[] compacted = new byte[(int) Math.max(Math.min(referenced, heapSize), INITIAL_CAPACITY * 16)];
+        Arrays.fill(recentValues, 0);
+        int position = 0;
+        for (int index = 0; index < size; index++) {
+            int offset = (int) (values[index] >>> VALUE_LENGTH_BITS);
+            int length = (int) (values[index] & VALUE_LENGTH_MASK);
+            int recent = hashValue(heap, offset, length) & (RECENT_VALUES - 1);
+            int holder = recentValues[recent] - 1;
+            if (holder != NONE && sameValue(values[holder], compacted, heap, offset, length)) {
+                values[index] = values[holder];
+                continue;
+            }
+
+            System.arraycopy(heap, offset, compacted, position, length);
+            values[index] = ((long) position << VALUE_LENGTH_BITS) | length;
+            recentValues[recent] = index + 1;
+            position += length;
+        }
+        heap = compacted;
+        heapSize = position;
+        heapGarbage = 0;
+    }
+
+    private static boolean sameValue(long reference, byte[] referencedHeap, byte[] bytes, int offset, int length) {
+        if ((int) (reference & VALUE_LENGTH_MASK) != length) {
+            return false;
+        }
+
+        int from = (int) (reference >>> VALUE_LENGTH_BITS);
+        for (int i = 0; i < length; i++) {
+            if (referencedHeap[from + i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hashValue(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private long writeValue(byte[] bytes) {
+        if (heapSize + bytes.length > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(heap.length * 2, heapSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, heap, heapSize, bytes.length);
+
+        long reference = ((long) heapSize << VALUE_LENGTH_BITS) | bytes.length;
+        heapSize += bytes.length;
+        return reference;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= parents.length) {
+            return;
+        }
+
+        int newCapacity = parents.length * 2;
+        guidMsb = Arrays.copyOf(guidMsb, newCapacity);
+        guidLsb = Arrays.copyOf(guidLsb, newCapacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+        firstChilds = Arrays.copyOf(firstChilds, newCapacity);
+        lastChilds = Arrays.copyOf(lastChilds, newCapacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, newCapacity);
+        prevSiblings = Arrays.copyOf(prevSiblings, newCapacity);
+        childCounts = Arrays.copyOf(childCounts, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        disabled = Arrays.copyOf(disabled, newCapacity >> 6);
+        resolved = new AtomicIntegerArray(newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+        slots = new int[newCapacity * 2];
+        for (int index = 0; index < size; index++) {
+            insertSlot(index);
+        }
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class ChildOrder {
+
+        private int[] slots;
+        private int count;
+
+        private ChildOrder(int capacity) {
+            slots = new int[Math.max(capacity, 1)];
+        }
+
+        private void append(int slot) {
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count * 2);
+            }
+            slots[count++] = slot;
+        }
+    }
+}
@@ -1,30 +1,441 @@
 package com.pes.treeview.core.persistent;
 
-import com.pes.treeview.core.domain.CacheNode;
 import com.pes.treeview.core.domain.DbNode;
-import com.pes.treeview.core.domain.Nodes;
+import com.pes.treeview.core.domain.SearchHit;
+import com.pes.treeview.core.event.NodeChange;
+import com.pes.treeview.core.event.NodeEvent;
+import com.pes.treeview.core.event.NodeEvents;
+import com.pes.treeview.core.metrics.TreeMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
-import java.util.function.Function;
-
-import static com.pes.treeview.core.domain.Nodes.newDefaultDbNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+@Slf4j
 @Component
 public class DBTreeStorage {
 
-    private DbNode tree;
+    private static final int LOCK_STRIPES = 64;
+    private static final int DEFAULT_VERSIONS = 10;
+    private static final int DEFAULT_FEED_CAPACITY = 1 << 16;
+
+    private final DbChangeLog changeLog;
+    private final DbSnapshots snapshots;
+    private final DbTreeSeeder seeder;
+    private final TreeMetrics metrics;
+    private final String backend;
+    private final int versions;
+    private final ReadWriteLock transactions;
+    private final ReadWriteLock structure;
+    private final StripedLocks locks;
+    private final IntervalIndex intervals;
+    private final NodeEvents events;
+    private final DbChangeFeed feed;
+    private volatile DbTree tree;
+    private volatile ValueIndex values;
+    private volatile Queue<NodeEvent> transactionEvents;
+    private volatile boolean failed;
+    private volatile boolean indexed;
+
+    public DBTreeStorage(DbChangeLog changeLog, DbTreeSeeder seeder, String backend) {
+        this(changeLog, new DbSnapshots(false, ""), seeder, new TreeMetrics(), backend, DEFAULT_VERSIONS, DEFAULT_FEED_CAPACITY);
+    }
+
+    @Autowired
+    public DBTreeStorage(
+            DbChangeLog changeLog,
+            DbSnapshots snapshots,
+            DbTreeSeeder seeder,
+            TreeMetrics metrics,
+            @Value("${tree-view.db.backend:object}") String backend,
+            @Value("${tree-view.db.versions:10}") int versions,
+            @Value("${tree-view.db.feed.capacity:65536}") int feedCapacity
+    ) {
+        this.changeLog = changeLog;
+        this.snapshots = snapshots;
+        this.seeder = seeder;
+        this.metrics = metrics;
+        this.backend = backend.trim().toLowerCase(Locale.ROOT);
+        this.versions = versions;
+        this.transactions = new ReentrantReadWriteLock();
+        this.structure = new ReentrantReadWriteLock();
+        this.locks = new StripedLocks(LOCK_STRIPES, metrics.getNodeLockWait());
+        this.intervals = new IntervalIndex();
+        this.events = new NodeEvents();
+        this.feed = new DbChangeFeed(feedCapacity);
+        CompactDbTree snapshot = snapshots.load();
+        if (snapshot != null) {
+            DbTree restored = "compact".equals(backend) ? snapshot : copyOf(snapshot.getRoot());
+            if (changeLog.replayOnto(restored, snapshot.snapshotCut())) {
+                tree = restored;
+                return;
+            }
+        }
+
+        DbNode restored = changeLog.replay();
+        if (restored != null) {
+            tree = copyOf(restored);
+        } else if (snapshots.exists()) {
+            throw new IllegalStateException("Can't restore db: the snapshot is unreadable and the db log holds no tree");
+        } else {
+            reset();
+        }
+    }
+
+    public NodeEvents.Subscription subscribe(Consumer<NodeEvent> listener) {
+        return events.subscribe(listener);
+    }
+
+    public long getSequence() {
+        return feed.sequence();
+    }
 
-    public DBTreeStorage() {
-        reset();
+    public Optional<List<NodeChange>> changesSince(long sequence) {
+        return feed.since(sequence);
     }
 
     public DbNode getTree() {
-        return tree;
+        return tree.getRoot();
+    }
+
+    public int size() {
+        return tree.size();
+    }
+
+    public Optional<DbNode> findNode(UUID guid) {
+        metrics.getLookupDb().increment();
+        return tree.find(guid);
+    }
+
+    public boolean isAncestor(DbNode ancestor, DbNode node) {
+        ensureIndexed();
+        return intervals.isAncestor(ancestor.getGuid(), node.getGuid());
+    }
+
+    public boolean isEnabled(DbNode node) {
+        ensureIndexed();
+        return !intervals.isDisabled(node.getGuid());
+    }
+
+    public int depth(DbNode node) {
+        ensureIndexed();
+        return intervals.depth(node.getGuid());
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        ensureIndexed();
+        List<SearchHit> hits = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+
+        for (UUID guid : values.candidates(query)) {
+            if (hits.size() == limit) {
+                break;
+            }
+            if (seen.add(guid)) {
+                tree.find(guid)
+                        .filter(this::isEnabled)
+                        .filter(node -> ValueIndex.matches(node.getValue(), query))
+                        .ifPresent(node -> hits.add(SearchHit.of(node)));
+            }
+        }
+        return hits;
+    }
+
+    public Optional<DbNode> addChild(DbNode parent, UUID guid, String value) {
+        DbChangeLog.checkValue(value);
+        ensureIndexed();
+        structure.readLock().lock();
+        try {
+            return locks.call(parent.getGuid(), () -> {
+                checkWritable();
+                Optional<DbNode> existed = tree.find(guid);
+                if (existed.isPresent()) {
+                    return existed;
+                }
+                if (intervals.isDisabled(parent.getGuid())) {
+                    return Optional.empty();
+                }
+
+                DbNode node = tree.addChild(parent, guid, value);
+                if (!intervals.add(parent, node)) {
+                    intervals.rebuild(tree.getLatestRoot(), tree.size());
+                }
+                values.add(node.getGuid(), value);
+                changeLog.appendAdd(node);
+                publish(NodeEvent.added(node));
+                return Optional.of(node);
+            });
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    public boolean changeValue(DbNode node, long expectedVersion, String value) {
+        DbChangeLog.checkValue(value);
+        ensureIndexed();
+        return locks.call(node.getGuid(), () -> {
+            checkWritable();
+            if (node.getVersion() != expectedVersion) {
+                return false;
+            }
+
+            values.remove(node.getGuid(), node.getValue());
+            tree.setValue(node, value);
+            values.add(node.getGuid(), value);
+            changeLog.appendValue(node);
+            publish(NodeEvent.valueChanged(node));
+            return true;
+        });
+    }
+
+    public boolean disable(DbNode node, long expectedVersion) {
+        ensureIndexed();
+        structure.writeLock().lock();
+        try {
+            return locks.call(node.getGuid(), () -> {
+                checkWritable();
+                if (node.getVersion() != expectedVersion) {
+                    return false;
+                }
+
+                if (!intervals.isDisabled(node.getGuid())) {
+                    unindexSubtree(node);
+                }
+                tree.disable(node);
+                intervals.disable(node);
+                changeLog.appendDisable(node);
+                publish(NodeEvent.disabled(node));
+                return true;
+            });
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    public boolean move(DbNode node, DbNode newParent) {
+        ensureIndexed();
+        structure.writeLock().lock();
+        try {
+            return locks.call(node.getGuid(), () -> {
+                checkWritable();
+                DbNode previousParent = node.getParent();
+                if (previousParent == null || !isEnabled(node) || !isEnabled(newParent) ||
+                        node.getGuid().equals(newParent.getGuid()) || isAncestor(node, newParent)) {
+                    return false;
+                }
+                if (previousParent.getGuid().equals(newParent.getGuid())) {
+                    return true;
+                }
+
+                tree.move(node, newParent);
+                if (!intervals.move(node, newParent)) {
+                    intervals.rebuild(tree.getLatestRoot(), tree.size());
+                }
+                changeLog.appendMove(node, newParent);
+                publish(NodeEvent.reparented(node, previousParent));
+                return true;
+            });
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    public void transaction(UUID workspace, Runnable changes) {
+        checkWritable();
+        ensureIndexed();
+        long started = System.nanoTime();
+        transactions.readLock().lock();
+        metrics.getTransactionLockWait().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        DbTree current = tree;
+        Queue<NodeEvent> buffered = new ConcurrentLinkedQueue<>();
+        boolean applied = false;
+        try {
+            if (current.isAtomic()) {
+                current.atomically(workspace, () -> {
+                    transactionEvents = buffered;
+                    try {
+                        changes.run();
+                    } finally {
+                        transactionEvents = null;
+                    }
+                });
+            } else {
+                changes.run();
+            }
+            applied = true;
+        } finally {
+            transactions.readLock().unlock();
+            if (applied) {
+                buffered.forEach(this::emit);
+            } else if (current.isAtomic()) {
+                exclusive(() -> {
+                    reindex();
+                    rewriteLog();
+                });
+            } else {
+                failed = true;
+                changeLog.discard();
+                log.error("Db transaction failed half applied on the " + backend + " backend, db is read-only until restart or reset");
+            }
+        }
+    }
+
+    public boolean canUndo(UUID workspace) {
+        return !failed && tree.canRevert(workspace);
+    }
+
+    public boolean undo(UUID workspace) {
+        if (!canUndo(workspace)) {
+            return false;
+        }
+
+        boolean[] reverted = new boolean[1];
+        exclusive(() -> {
+            reverted[0] = tree.revert(workspace);
+            if (reverted[0]) {
+                reindex();
+                rewriteLog();
+            }
+        });
+        if (reverted[0]) {
+            emit(NodeEvent.reset());
+        }
+        return reverted[0];
+    }
+
+    private void unindexSubtree(DbNode root) {
+        Deque<DbNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            DbNode node = stack.pop();
+            values.remove(node.getGuid(), node.getValue());
+            for (DbNode child : node.getChilds()) {
+                if (!intervals.isDisabled(child.getGuid())) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (failed) {
+            throw new IllegalStateException("Db is read-only after a failed transaction");
+        }
+    }
+
+    private void ensureIndexed() {
+        if (!indexed) {
+            exclusive(() -> {
+                if (!indexed) {
+                    reindex();
+                }
+            });
+        }
+    }
+
+    private void exclusive(Runnable action) {
+        exclusive(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <T> T exclusive(Supplier<T> action) {
+        transactions.writeLock().lock();
+        try {
+            return locks.callExclusive(action);
+        } finally {
+            transactions.writeLock().unlock();
+        }
+    }
+
+    private void publish(NodeEvent event) {
+        Queue<NodeEvent> buffered = transactionEvents;
+        if (buffered != null) {
+            buffered.add(event);
+        } else {
+            emit(event);
+        }
+    }
+
+    private void emit(NodeEvent event) {
+        feed.append(event);
+        events.publish(event);
+    }
+
+    public void commit() {
+        if (!failed) {
+            changeLog.commit();
+        }
+    }
+
+    public synchronized void checkpoint() {
+        if (!snapshots.isEnabled() || failed) {
+            return;
+        }
+
+        DbChangeLog.Cut[] cut = new DbChangeLog.Cut[1];
+        Supplier<CompactDbTree> snapshot = exclusive(() -> {
+            changeLog.commit();
+            cut[0] = changeLog.cut();
+            return tree.snapshot();
+        });
+        snapshots.write(snapshot.get(), cut[0]);
+        changeLog.truncateTo(cut[0]);
     }
 
     public void reset() {
-        tree = newDefaultDbNode();
+        reset(seeder.newTree());
+    }
+
+    public void reset(DbNode root) {
+        exclusive(() -> {
+            tree = copyOf(root);
+            reindex();
+            rewriteLog();
+            failed = false;
+        });
+        emit(NodeEvent.reset());
+    }
+
+    private DbTree copyOf(DbNode root) {
+        switch (backend) {
+            case "compact":
+                return CompactDbTree.copyOf(root);
+            case "persistent":
+                return PersistentDbTree.copyOf(root, versions);
+            default:
+                return ObjectDbTree.copyOf(root);
+        }
+    }
+
+    private void rewriteLog() {
+        changeLog.rewrite(tree.getRoot());
+        snapshots.delete();
+    }
+
+    private void reindex() {
+        intervals.rebuild(tree.getRoot(), tree.size());
+        values = ValueIndex.of(tree.getRoot());
+        metrics.getTraversalDbReindex().record(tree.size());
+        indexed = true;
     }
 
 }
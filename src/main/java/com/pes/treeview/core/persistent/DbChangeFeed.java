@@ -0,0 +1,58 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.event.NodeChange;
+import com.pes.treeview.core.event.NodeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+class DbChangeFeed {
+
+    private static final NodeEvent.Type[] TYPES = NodeEvent.Type.values();
+
+    private final int capacity;
+    private final long[] guidMsb;
+    private final long[] guidLsb;
+    private final byte[] types;
+    private long sequence;
+    private long validFrom;
+
+    DbChangeFeed(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.guidMsb = new long[this.capacity];
+        this.guidLsb = new long[this.capacity];
+        this.types = new byte[this.capacity];
+    }
+
+    synchronized void append(NodeEvent event) {
+        if (event.getNode() == null) {
+            validFrom = ++sequence;
+            return;
+        }
+
+        UUID guid = event.getNode().getGuid();
+        int slot = (int) (++sequence % capacity);
+        guidMsb[slot] = guid.getMostSignificantBits();
+        guidLsb[slot] = guid.getLeastSignificantBits();
+        types[slot] = (byte) event.getType().ordinal();
+    }
+
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    synchronized Optional<List<NodeChange>> since(long synced) {
+        if (synced < validFrom || synced < sequence - capacity || synced > sequence) {
+            return Optional.empty();
+        }
+
+        List<NodeChange> changes = new ArrayList<>((int) (sequence - synced));
+        for (long next = synced + 1; next <= sequence; next++) {
+            int slot = (int) (next % capacity);
+            changes.add(new NodeChange(next, TYPES[types[slot]], new UUID(guidMsb[slot], guidLsb[slot])));
+        }
+        return Optional.of(changes);
+    }
+}
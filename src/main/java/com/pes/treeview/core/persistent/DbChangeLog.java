@@ -0,0 +1,560 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.ObjectDbNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+import static com.pes.treeview.core.domain.Nodes.moveDbNode;
+import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Nodes.newDbRoot;
+import static com.pes.treeview.core.domain.Trees.preOrder;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+@Slf4j
+@Component
+public class DbChangeLog {
+
+    private static final byte UTF_ADD = 1;
+    private static final byte UTF_VALUE = 2;
+    private static final byte DISABLE = 3;
+    private static final byte MOVE = 4;
+    private static final byte BASE = 5;
+    private static final byte ADD = 6;
+    private static final byte VALUE = 7;
+    private static final int HEADER_SIZE = 8;
+    private static final int BASE_RECORD_SIZE = HEADER_SIZE + 1 + 2 * Long.BYTES;
+    private static final int MAX_VALUE_SIZE = CompactDbTree.MAX_VALUE_SIZE;
+    private static final int MAX_RECORD_SIZE = MAX_VALUE_SIZE + 64;
+    private static final int FLUSH_THRESHOLD = 1 << 20;
+
+    private final boolean enabled;
+    private final Path path;
+    private final ByteArrayOutputStream pending;
+    private FileChannel channel;
+    private long committed;
+    private boolean discarded;
+    private long epoch;
+    private long base;
+    private long start;
+
+    public DbChangeLog(
+            @Value("${tree-view.db.log.enabled:false}") boolean enabled,
+            @Value("${tree-view.db.log.path:tree-view-db.log}") String path
+    ) {
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+        this.pending = new ByteArrayOutputStream();
+    }
+
+    public DbNode replay() {
+        if (!enabled) {
+            return null;
+        }
+
+        Map<UUID, ObjectDbNode> nodes = new HashMap<>();
+        DbNode[] root = new DbNode[1];
+        try {
+            replay(null, in -> {
+                DbNode added = apply(in, nodes);
+                if (added != null && added.getParent() == null) {
+                    root[0] = added;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IllegalStateException("Can't replay db log: " + path + ": " + e.getCause().getMessage(), e);
+        }
+        return root[0];
+    }
+
+    boolean replayOnto(DbTree tree, Cut from) {
+        if (!enabled) {
+            return true;
+        }
+
+        try {
+            replay(from, in -> applyOnto(in, tree));
+            return true;
+        } catch (UncheckedIOException e) {
+            log.warn("Db log does not continue snapshot: " + e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    synchronized Cut cut() {
+        return new Cut(epoch, base + committed);
+    }
+
+    public synchronized void truncateTo(Cut cut) {
+        if (!enabled || cut.epoch != epoch) {
+            return;
+        }
+
+        long from = cut.position - base;
+        if (from <= start) {
+            return;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            open();
+            long shift = from - BASE_RECORD_SIZE;
+            byte[] header = baseRecord(epoch, base + shift);
+            long position = channel.position();
+            FileChannel previous = channel;
+            try (FileChannel truncated = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                writeFully(truncated, header);
+                for (long copied = from; copied < previous.size(); ) {
+                    copied += previous.transferTo(copied, previous.size() - copied, truncated);
+                }
+                truncated.force(true);
+            }
+            Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+
+            previous.close();
+            channel = null;
+            open();
+            base += shift;
+            start = BASE_RECORD_SIZE;
+            committed -= shift;
+            channel.position(position - shift);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replay(Cut from, RecordReader reader) {
+        try {
+            open();
+            long validSize = 0;
+            epoch = 0;
+            base = 0;
+            start = 0;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+
+            while (true) {
+                byte[] record = readRecord(in, channel.size() - validSize - HEADER_SIZE);
+                if (record == null) {
+                    break;
+                }
+                long offset = validSize;
+                validSize += HEADER_SIZE + record.length;
+
+                if (offset == 0 && record[0] == BASE) {
+                    DataInputStream header = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+                    epoch = header.readLong();
+                    base = header.readLong();
+                    start = validSize;
+                } else if (from == null || base + offset >= from.position) {
+                    checkContinues(from, base + offset, offset == start);
+                    reader.read(new DataInputStream(new ByteArrayInputStream(record)));
+                }
+            }
+
+            checkContinues(from, base + validSize, false);
+            if (validSize < channel.size()) {
+                log.warn("Truncate torn tail of db log: " + path + " at " + validSize);
+                channel.truncate(validSize);
+                channel.force(true);
+            }
+            channel.position(validSize);
+            committed = validSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkContinues(Cut from, long position, boolean first) throws IOException {
+        if (from == null) {
+            return;
+        }
+        if (from.epoch != epoch) {
+            throw new IOException("Db log was rewritten after the snapshot");
+        }
+        if (first ? position > from.position : position < from.position) {
+            throw new IOException("Db log " + (first ? "starts" : "ends") + " at " + position + ", snapshot cut is at " + from.position);
+        }
+    }
+
+    public synchronized void rewrite(DbNode tree) {
+        if (!enabled) {
+            return;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        byte[] superseded = pending.toByteArray();
+        boolean wasDiscarded = discarded;
+        long rewrittenEpoch = ThreadLocalRandom.current().nextLong();
+        try {
+            open();
+            FileChannel previous = channel;
+            try {
+                channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING);
+                pending.reset();
+                discarded = false;
+                pending.write(baseRecord(rewrittenEpoch, 0));
+                preOrder(tree, node -> {
+                    appendAdd(node);
+                    if (!node.isEnable() && (node.getParent() == null || node.getParent().isEnable())) {
+                        appendDisable(node);
+                    }
+                });
+                writePending();
+                channel.force(true);
+                channel.close();
+                Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                if (channel != previous) {
+                    closeQuietly(channel);
+                    channel = previous;
+                }
+                pending.reset();
+                pending.write(superseded, 0, superseded.length);
+                discarded = wasDiscarded;
+                throw e;
+            }
+
+            previous.close();
+            channel = null;
+            open();
+            epoch = rewrittenEpoch;
+            base = 0;
+            start = BASE_RECORD_SIZE;
+            committed = channel.size();
+            channel.position(committed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Can't close db log channel: " + e.getMessage());
+        }
+    }
+
+    public synchronized void appendAdd(DbNode node) {
+        append(ADD, out -> {
+            writeGuid(out, node.getGuid());
+            out.writeBoolean(node.getParent() != null);
+            if (node.getParent() != null) {
+                writeGuid(out, node.getParent().getGuid());
+            }
+            writeValue(out, node.getValue());
+        });
+    }
+
+    public synchronized void appendValue(DbNode node) {
+        append(VALUE, out -> {
+            writeGuid(out, node.getGuid());
+            writeValue(out, node.getValue());
+        });
+    }
+
+    public synchronized void appendDisable(DbNode node) {
+        append(DISABLE, out -> writeGuid(out, node.getGuid()));
+    }
+
+    public synchronized void appendMove(DbNode node, DbNode newParent) {
+        append(MOVE, out -> {
+            writeGuid(out, node.getGuid());
+            writeGuid(out, newParent.getGuid());
+        });
+    }
+
+    public synchronized void commit() {
+        if (!enabled || discarded) {
+            return;
+        }
+
+        try {
+            writePending();
+            channel.force(false);
+            committed = channel.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void discard() {
+        if (!enabled) {
+            return;
+        }
+
+        discarded = true;
+        try {
+            open();
+            pending.reset();
+            channel.truncate(committed);
+            channel.position(committed);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            commit();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(byte type, RecordWriter writer) {
+        if (!enabled || discarded) {
+            return;
+        }
+
+        try {
+            pending.write(record(type, writer));
+            if (pending.size() >= FLUSH_THRESHOLD) {
+                writePending();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] baseRecord(long epoch, long base) throws IOException {
+        return record(BASE, out -> {
+            out.writeLong(epoch);
+            out.writeLong(base);
+        });
+    }
+
+    private static byte[] record(byte type, RecordWriter writer) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        writer.write(out);
+
+        byte[] record = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(HEADER_SIZE + record.length);
+        DataOutputStream framedOut = new DataOutputStream(framed);
+        framedOut.writeInt(record.length);
+        framedOut.writeInt((int) crc.getValue());
+        framedOut.write(record);
+        return framed.toByteArray();
+    }
+
+    private void writePending() throws IOException {
+        writeFully(channel, pending.toByteArray());
+        pending.reset();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > remaining) {
+                return null;
+            }
+
+            byte[] record = new byte[length];
+            in.readFully(record);
+
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return (int) crc.getValue() == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private DbNode apply(DataInputStream in, Map<UUID, ObjectDbNode> nodes) throws IOException {
+        byte type = in.readByte();
+        UUID guid = readGuid(in);
+
+        switch (type) {
+            case UTF_ADD:
+            case ADD:
+                UUID parentGuid = in.readBoolean() ? readGuid(in) : null;
+                String value = readValue(in, type);
+                if (parentGuid == null) {
+                    if (!nodes.isEmpty()) {
+                        throw new IOException("Second root in db log record for: " + guid);
+                    }
+                    ObjectDbNode root = newDbRoot(value, guid);
+                    nodes.put(guid, root);
+                    return root;
+                }
+                ObjectDbNode parent = nodes.get(parentGuid);
+                if (parent == null) {
+                    throw new IOException("Unknown parent in db log record for: " + guid + ", the log continues a snapshot");
+                }
+                ObjectDbNode node = newDbNodeFromExisted(value, parent, guid);
+                parent.addChild(node);
+                nodes.put(guid, node);
+                return node;
+            case UTF_VALUE:
+            case VALUE:
+                find(nodes, guid).setValue(readValue(in, type));
+                return null;
+            case DISABLE:
+                find(nodes, guid).setEnable(false);
+                return null;
+            case MOVE:
+                ObjectDbNode moved = nodes.get(guid);
+                ObjectDbNode newParent = nodes.get(readGuid(in));
+                if (moved == null || newParent == null || moved.getParent() == null) {
+                    throw new IOException("Unknown node in db log move record for: " + guid);
+                }
+                if (moved.getParent() != newParent) {
+                    moveDbNode(moved, newParent);
+                }
+                return null;
+            default:
+                throw new IOException("Unknown db log record type: " + type);
+        }
+    }
+
+    private void applyOnto(DataInputStream in, DbTree tree) throws IOException {
+        byte type = in.readByte();
+        UUID guid = readGuid(in);
+
+        switch (type) {
+            case UTF_ADD:
+            case ADD:
+                UUID parentGuid = in.readBoolean() ? readGuid(in) : null;
+                String value = readValue(in, type);
+                if (parentGuid == null) {
+                    throw new IOException("Db log was rewritten after the snapshot at root: " + guid);
+                }
+                DbNode parent = find(tree, parentGuid);
+                if (!tree.find(guid).isPresent()) {
+                    tree.addChild(parent, guid, value);
+                }
+                return;
+            case UTF_VALUE:
+            case VALUE:
+                tree.setValue(find(tree, guid), readValue(in, type));
+                return;
+            case DISABLE:
+                tree.disable(find(tree, guid));
+                return;
+            case MOVE:
+                tree.move(find(tree, guid), find(tree, readGuid(in)));
+                return;
+            default:
+                throw new IOException("Unknown db log record type: " + type);
+        }
+    }
+
+    private static ObjectDbNode find(Map<UUID, ObjectDbNode> nodes, UUID guid) throws IOException {
+        ObjectDbNode node = nodes.get(guid);
+        if (node == null) {
+            throw new IOException("Unknown node in db log record for: " + guid + ", the log continues a snapshot");
+        }
+        return node;
+    }
+
+    private static DbNode find(DbTree tree, UUID guid) throws IOException {
+        Optional<DbNode> node = tree.find(guid);
+        if (!node.isPresent()) {
+            throw new IOException("Unknown node in db log record for: " + guid);
+        }
+        return node.get();
+    }
+
+    private void open() throws IOException {
+        if (channel == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, CREATE, READ, WRITE);
+        }
+    }
+
+    private static void writeGuid(DataOutputStream out, UUID guid) throws IOException {
+        out.writeLong(guid.getMostSignificantBits());
+        out.writeLong(guid.getLeastSignificantBits());
+    }
+
+    private static UUID readGuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void checkValue(String value) {
+        if (value.length() > MAX_VALUE_SIZE / 3 && value.getBytes(StandardCharsets.UTF_8).length > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("Value is too long: more than " + MAX_VALUE_SIZE + " bytes");
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("Value is too long: " + bytes.length + " bytes");
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readValue(DataInputStream in, byte type) throws IOException {
+        if (type == UTF_ADD || type == UTF_VALUE) {
+            return in.readUTF();
+        }
+
+        int length = in.readInt();
+        if (length < 0 || length > MAX_VALUE_SIZE) {
+            throw new IOException("Bad value length in db log record: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static final class Cut {
+
+        static final Cut START = new Cut(0, 0);
+
+        final long epoch;
+        final long position;
+
+        Cut(long epoch, long position) {
+            this.epoch = epoch;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.pes.treeview.core.persistent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class DbCheckpointer {
+
+    private final DBTreeStorage dbTreeStorage;
+    private final DbSnapshots snapshots;
+    private final long intervalSeconds;
+    private ScheduledExecutorService scheduler;
+
+    public DbCheckpointer(
+            DBTreeStorage dbTreeStorage,
+            DbSnapshots snapshots,
+            @Value("${tree-view.db.snapshot.interval-seconds:300}") long intervalSeconds
+    ) {
+        this.dbTreeStorage = dbTreeStorage;
+        this.snapshots = snapshots;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!snapshots.isEnabled() || intervalSeconds <= 0) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "db-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkpoint, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(intervalSeconds, TimeUnit.SECONDS);
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            dbTreeStorage.checkpoint();
+        } catch (RuntimeException e) {
+            log.warn("Db checkpoint failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.pes.treeview.core.persistent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+@Slf4j
+@Component
+public class DbSnapshots {
+
+    private final boolean enabled;
+    private final Path path;
+
+    public DbSnapshots(
+            @Value("${tree-view.db.snapshot.enabled:false}") boolean enabled,
+            @Value("${tree-view.db.snapshot.path:tree-view-db.snapshot}") String path
+    ) {
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean exists() {
+        return enabled && Files.exists(path);
+    }
+
+    CompactDbTree load() {
+        if (!enabled || !Files.isRegularFile(path)) {
+            return null;
+        }
+
+        long started = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            CompactDbTree tree = CompactDbTree.readSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            log.info("Load db snapshot: " + path + " with " + tree.size() + " nodes in " + (System.currentTimeMillis() - started) + " ms");
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skip unreadable db snapshot: " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    void write(CompactDbTree tree, DbChangeLog.Cut cut) {
+        if (!enabled) {
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                tree.writeSnapshot(channel, cut);
+                channel.force(true);
+            }
+            Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            log.info("Write db snapshot: " + path + " with " + tree.size() + " nodes in " + (System.currentTimeMillis() - started) + " ms");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
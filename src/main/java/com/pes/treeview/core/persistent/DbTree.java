@@ -0,0 +1,49 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+interface DbTree {
+
+    DbNode getRoot();
+
+    default DbNode getLatestRoot() {
+        return getRoot();
+    }
+
+    Optional<DbNode> find(UUID guid);
+
+    DbNode addChild(DbNode parent, UUID guid, String value);
+
+    void move(DbNode node, DbNode newParent);
+
+    void setValue(DbNode node, String value);
+
+    void disable(DbNode node);
+
+    int size();
+
+    default boolean isAtomic() {
+        return false;
+    }
+
+    default void atomically(UUID workspace, Runnable changes) {
+        changes.run();
+    }
+
+    default boolean canRevert(UUID workspace) {
+        return false;
+    }
+
+    default boolean revert(UUID workspace) {
+        return false;
+    }
+
+    default Supplier<CompactDbTree> snapshot() {
+        CompactDbTree copy = CompactDbTree.copyOf(getRoot());
+        return () -> copy;
+    }
+}
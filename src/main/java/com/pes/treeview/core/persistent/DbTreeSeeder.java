@@ -0,0 +1,48 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.TreeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.pes.treeview.core.domain.Nodes.newDefaultDbNode;
+
+@Slf4j
+@Component
+public class DbTreeSeeder {
+
+    private final boolean generated;
+    private final TreeGenerator generator;
+
+    @Autowired
+    public DbTreeSeeder(
+            @Value("${tree-view.db.seed.type:default}") String type,
+            @Value("${tree-view.db.seed.nodes:1000}") int nodes,
+            @Value("${tree-view.db.seed.depth:10}") int depth,
+            @Value("${tree-view.db.seed.fanout:10}") int fanout,
+            @Value("${tree-view.db.seed.distribution:uniform}") String distribution,
+            @Value("${tree-view.db.seed.value-length:12}") int valueLength,
+            @Value("${tree-view.db.seed.random-seed:42}") long randomSeed
+    ) {
+        this.generated = "generated".equalsIgnoreCase(type.trim());
+        this.generator = new TreeGenerator(nodes, depth, fanout, TreeGenerator.Distribution.of(distribution), valueLength, randomSeed);
+    }
+
+    public DbTreeSeeder(TreeGenerator generator) {
+        this.generated = true;
+        this.generator = generator;
+    }
+
+    public DbNode newTree() {
+        if (!generated) {
+            return newDefaultDbNode();
+        }
+
+        long start = System.currentTimeMillis();
+        DbNode tree = generator.generate();
+        log.info("Generated db tree in " + (System.currentTimeMillis() - start) + " ms");
+        return tree;
+    }
+}
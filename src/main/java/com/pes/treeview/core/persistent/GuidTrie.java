@@ -0,0 +1,143 @@
+package com.pes.treeview.core.persistent;
+
+import java.util.Objects;
+import java.util.UUID;
+
+final class GuidTrie<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 60;
+    private static final GuidTrie<?> EMPTY = new GuidTrie<>(new Branch(0, new Object[0]), 0);
+
+    private final Branch root;
+    private final int size;
+
+    private GuidTrie(Branch root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> GuidTrie<V> empty() {
+        return (GuidTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(UUID guid) {
+        long hash = hash(guid);
+        Object slot = root;
+        for (int shift = 0; slot instanceof Branch; shift += BITS) {
+            slot = ((Branch) slot).find((int) (hash >>> shift) & MASK);
+        }
+
+        for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+            if (leaf.guid.equals(guid)) {
+                return (V) leaf.value;
+            }
+        }
+        return null;
+    }
+
+    GuidTrie<V> put(UUID guid, V value) {
+        boolean[] added = new boolean[1];
+        Branch updated = put(root, 0, hash(guid), guid, value, added);
+        return new GuidTrie<>(updated, added[0] ? size + 1 : size);
+    }
+
+    private static Branch put(Branch branch, int shift, long hash, UUID guid, Object value, boolean[] added) {
+        int index = (int) (hash >>> shift) & MASK;
+        Object slot = branch.find(index);
+
+        if (slot == null) {
+            added[0] = true;
+            return branch.with(index, new Leaf(guid, value, null));
+        }
+        if (slot instanceof Branch) {
+            return branch.with(index, put((Branch) slot, shift + BITS, hash, guid, value, added));
+        }
+
+        Leaf leaf = (Leaf) slot;
+        if (leaf.contains(guid)) {
+            return branch.with(index, leaf.replace(guid, value));
+        }
+        if (shift + BITS > MAX_SHIFT || hash(leaf.guid) == hash) {
+            added[0] = true;
+            return branch.with(index, new Leaf(guid, value, leaf));
+        }
+
+        Branch split = new Branch(0, new Object[0]).with((int) (hash(leaf.guid) >>> (shift + BITS)) & MASK, leaf);
+        return branch.with(index, put(split, shift + BITS, hash, guid, value, added));
+    }
+
+    private static long hash(UUID guid) {
+        long hash = (guid.getMostSignificantBits() ^ guid.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static final class Branch {
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private Branch(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private Object find(int index) {
+            int bit = 1 << index;
+            return (bitmap & bit) == 0 ? null : slots[Integer.bitCount(bitmap & (bit - 1))];
+        }
+
+        private Branch with(int index, Object slot) {
+            int bit = 1 << index;
+            int position = Integer.bitCount(bitmap & (bit - 1));
+
+            if ((bitmap & bit) != 0) {
+                Object[] copy = slots.clone();
+                copy[position] = slot;
+                return new Branch(bitmap, copy);
+            }
+
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, position);
+            copy[position] = slot;
+            System.arraycopy(slots, position, copy, position + 1, slots.length - position);
+            return new Branch(bitmap | bit, copy);
+        }
+    }
+
+    private static final class Leaf {
+
+        private final UUID guid;
+        private final Object value;
+        private final Leaf next;
+
+        private Leaf(UUID guid, Object value, Leaf next) {
+            this.guid = guid;
+            this.value = value;
+            this.next = next;
+        }
+
+        private boolean contains(UUID other) {
+            for (Leaf leaf = this; leaf != null; leaf = leaf.next) {
+                if (leaf.guid.equals(other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Leaf replace(UUID other, Object replacement) {
+            if (guid.equals(other)) {
+                return new Leaf(guid, replacement, next);
+            }
+            return new Leaf(guid, value, Objects.requireNonNull(next).replace(other, replacement));
+        }
+    }
+}
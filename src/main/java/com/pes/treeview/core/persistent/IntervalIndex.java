@@ -0,0 +1,365 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+class IntervalIndex {
+
+    private static final long LABEL_SPACE = Long.MAX_VALUE / 4;
+    private static final int CHILD_SLOT_SHIFT = 8;
+
+    private volatile Labelling<?> labelling = new GuidLabelling(1);
+
+    synchronized void rebuild(DbNode root, int size) {
+        long gap = Math.max(2, LABEL_SPACE / (2L * size + 1));
+        Labelling<?> rebuilt = root instanceof CompactDbNode ?
+                new SlotLabelling(((CompactDbNode) root).tree(), gap, size) :
+                new GuidLabelling(gap);
+        rebuilt.label(root, 0, 0, gap);
+        labelling = rebuilt;
+    }
+
+    synchronized boolean move(DbNode node, DbNode newParent) {
+        return labelling.move(node, newParent);
+    }
+
+    synchronized boolean add(DbNode parent, DbNode node) {
+        return labelling.add(parent, node);
+    }
+
+    synchronized void disable(DbNode node) {
+        labelling.disable(node);
+    }
+
+    boolean isAncestor(UUID ancestor, UUID node) {
+        return labelling.isAncestor(ancestor, node);
+    }
+
+    boolean isDisabled(UUID guid) {
+        return labelling.isDisabled(guid);
+    }
+
+    int depth(UUID guid) {
+        return labelling.depth(guid);
+    }
+
+    private abstract static class Labelling<L> {
+
+        private final long gap;
+        private final NavigableMap<Long, Long> disabled = new ConcurrentSkipListMap<>();
+
+        private Labelling(long gap) {
+            this.gap = gap;
+        }
+
+        abstract L find(UUID guid);
+
+        abstract L find(DbNode node);
+
+        abstract L put(DbNode node, long enter, int depth, long tail, long exit);
+
+        abstract long enter(L label);
+
+        abstract long exit(L label);
+
+        abstract long tail(L label);
+
+        abstract int depth(L label);
+
+        abstract void exit(L label, long exit);
+
+        abstract void tail(L label, long tail);
+
+        boolean move(DbNode node, DbNode newParent) {
+            L parentLabel = find(newParent);
+            L label = find(node);
+            if (parentLabel == null || label == null) {
+                return false;
+            }
+
+            int[] subtreeSize = new int[1];
+            preOrder(node, child -> subtreeSize[0]++);
+
+            long available = (exit(parentLabel) - tail(parentLabel)) / 2 - 2L * subtreeSize[0];
+            long childGap = Math.min(gap, available / (2L * subtreeSize[0]));
+            if (childGap < 2) {
+                return false;
+            }
+
+            disabled.subMap(enter(label), true, exit(label), true).clear();
+            tail(parentLabel, label(node, tail(parentLabel), depth(parentLabel) + 1, childGap));
+            return true;
+        }
+
+        long label(DbNode root, long position, int depth, long gap) {
+            Deque<DbNode> nodes = new ArrayDeque<>();
+            Deque<L> labels = new ArrayDeque<>();
+            Deque<Iterator<DbNode>> stack = new ArrayDeque<>();
+            labels.push(put(root, position++, depth, 0, 0));
+            nodes.push(root);
+            stack.push(root.getChilds().iterator());
+
+            while (!stack.isEmpty()) {
+                Iterator<DbNode> childs = stack.peek();
+                if (childs.hasNext()) {
+                    DbNode child = childs.next();
+                    labels.push(put(child, position++, depth + nodes.size(), 0, 0));
+                    nodes.push(child);
+                    stack.push(child.getChilds().iterator());
+                    continue;
+                }
+
+                stack.pop();
+                DbNode node = nodes.pop();
+                L label = labels.pop();
+                tail(label, position);
+                position += gap * (1L + node.getChildCount());
+                exit(label, position++);
+
+                if (!node.isEnable() && (node.getParent() == null || node.getParent().isEnable())) {
+                    disabled.put(enter(label), exit(label));
+                }
+            }
+            return position;
+        }
+
+        boolean add(DbNode parent, DbNode node) {
+            L parentLabel = find(parent);
+            if (parentLabel == null) {
+                return false;
+            }
+
+            long width = Math.min(gap >>> CHILD_SLOT_SHIFT, (exit(parentLabel) - tail(parentLabel)) / 2);
+            if (width < 2) {
+                return false;
+            }
+
+            long enter = tail(parentLabel);
+            put(node, enter, depth(parentLabel) + 1, enter + 1, enter + width - 1);
+            tail(parentLabel, enter + width);
+            return true;
+        }
+
+        void disable(DbNode node) {
+            L label = find(node);
+            if (label == null || isDisabled(label)) {
+                return;
+            }
+
+            disabled.subMap(enter(label), true, exit(label), true).clear();
+            disabled.put(enter(label), exit(label));
+        }
+
+        boolean isAncestor(UUID ancestor, UUID node) {
+            L ancestorLabel = find(ancestor);
+            L nodeLabel = find(node);
+
+            return ancestorLabel != null && nodeLabel != null &&
+                    enter(ancestorLabel) < enter(nodeLabel) && exit(nodeLabel) <= exit(ancestorLabel);
+        }
+
+        boolean isDisabled(UUID guid) {
+            L label = find(guid);
+            return label != null && isDisabled(label);
+        }
+
+        int depth(UUID guid) {
+            L label = find(guid);
+            return label == null ? -1 : depth(label);
+        }
+
+        private boolean isDisabled(L label) {
+            Map.Entry<Long, Long> range = disabled.floorEntry(enter(label));
+            return range != null && range.getValue() >= exit(label);
+        }
+    }
+
+    private static final class GuidLabelling extends Labelling<Label> {
+
+        private final Map<UUID, Label> labels = new ConcurrentHashMap<>();
+
+        private GuidLabelling(long gap) {
+            super(gap);
+        }
+
+        @Override
+        Label find(UUID guid) {
+            return labels.get(guid);
+        }
+
+        @Override
+        Label find(DbNode node) {
+            return labels.get(node.getGuid());
+        }
+
+        @Override
+        Label put(DbNode node, long enter, int depth, long tail, long exit) {
+            Label label = new Label(enter, depth);
+            label.tail = tail;
+            label.exit = exit;
+            labels.put(node.getGuid(), label);
+            return label;
+        }
+
+        @Override
+        long enter(Label label) {
+            return label.enter;
+        }
+
+        @Override
+        long exit(Label label) {
+            return label.exit;
+        }
+
+        @Override
+        long tail(Label label) {
+            return label.tail;
+        }
+
+        @Override
+        int depth(Label label) {
+            return label.depth;
+        }
+
+        @Override
+        void exit(Label label, long exit) {
+            label.exit = exit;
+        }
+
+        @Override
+        void tail(Label label, long tail) {
+            label.tail = tail;
+        }
+    }
+
+    private static final class Label {
+
+        private final long enter;
+        private final int depth;
+        private volatile long exit;
+        private volatile long tail;
+
+        private Label(long enter, int depth) {
+            this.enter = enter;
+            this.depth = depth;
+        }
+    }
+
+    private static final class SlotLabelling extends Labelling<Integer> {
+
+        private final CompactDbTree tree;
+        private volatile Columns columns;
+
+        private SlotLabelling(CompactDbTree tree, long gap, int size) {
+            super(gap);
+            this.tree = tree;
+            this.columns = new Columns(size + (size >> 3) + 16);
+        }
+
+        @Override
+        Integer find(UUID guid) {
+            return labelled(tree.index(guid));
+        }
+
+        @Override
+        Integer find(DbNode node) {
+            return labelled(slot(node));
+        }
+
+        private Integer labelled(int index) {
+            Columns current = columns;
+            return index == CompactDbTree.NONE || index >= current.depths.length() || current.depths.get(index) == 0 ?
+                    null :
+                    index;
+        }
+
+        private int slot(DbNode node) {
+            if (node instanceof CompactDbNode && ((CompactDbNode) node).tree() == tree) {
+                return ((CompactDbNode) node).index();
+            }
+            return tree.index(node.getGuid());
+        }
+
+        @Override
+        Integer put(DbNode node, long enter, int depth, long tail, long exit) {
+            int index = slot(node);
+            Columns current = columns;
+            if (index >= current.depths.length()) {
+                current = new Columns(current, Math.max(index + 1, current.depths.length() * 2));
+                columns = current;
+            }
+            current.enters.set(index, enter);
+            current.tails.set(index, tail);
+            current.exits.set(index, exit);
+            current.depths.set(index, depth + 1);
+            return index;
+        }
+
+        @Override
+        long enter(Integer label) {
+            return columns.enters.get(label);
+        }
+
+        @Override
+        long exit(Integer label) {
+            return columns.exits.get(label);
+        }
+
+        @Override
+        long tail(Integer label) {
+            return columns.tails.get(label);
+        }
+
+        @Override
+        int depth(Integer label) {
+            return columns.depths.get(label) - 1;
+        }
+
+        @Override
+        void exit(Integer label, long exit) {
+            columns.exits.set(label, exit);
+        }
+
+        @Override
+        void tail(Integer label, long tail) {
+            columns.tails.set(label, tail);
+        }
+    }
+
+    private static final class Columns {
+
+        private final AtomicLongArray enters;
+        private final AtomicLongArray exits;
+        private final AtomicLongArray tails;
+        private final AtomicIntegerArray depths;
+
+        private Columns(int capacity) {
+            enters = new AtomicLongArray(capacity);
+            exits = new AtomicLongArray(capacity);
+            tails = new AtomicLongArray(capacity);
+            depths = new AtomicIntegerArray(capacity);
+        }
+
+        private Columns(Columns previous, int capacity) {
+            this(capacity);
+            for (int index = 0; index < previous.depths.length(); index++) {
+                enters.set(index, previous.enters.get(index));
+                exits.set(index, previous.exits.get(index));
+                tails.set(index, previous.tails.get(index));
+                depths.set(index, previous.depths.get(index));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.ObjectDbNode;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.pes.treeview.core.domain.Nodes.moveDbNode;
+import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Nodes.newDbRoot;
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+class ObjectDbTree implements DbTree {
+
+    private final ObjectDbNode root;
+    private final Map<UUID, ObjectDbNode> index;
+
+    private ObjectDbTree(ObjectDbNode root) {
+        this.root = root;
+        this.index = new ConcurrentHashMap<>();
+        preOrder(root, node -> index.put(node.getGuid(), (ObjectDbNode) node));
+    }
+
+    static ObjectDbTree copyOf(DbNode root) {
+        if (root instanceof ObjectDbNode) {
+            return new ObjectDbTree((ObjectDbNode) root);
+        }
+
+        ObjectDbTree tree = new ObjectDbTree(newDbRoot(root.getValue(), root.getGuid()));
+        preOrder(root, node -> {
+            ObjectDbNode copy = node.getParent() == null ?
+                    tree.root :
+                    tree.append(tree.index.get(node.getParent().getGuid()), node.getGuid(), node.getValue());
+            if (!node.isEnable() && (node.getParent() == null || node.getParent().isEnable())) {
+                copy.setEnable(false);
+            }
+        });
+        return tree;
+    }
+
+    @Override
+    public DbNode getRoot() {
+        return root;
+    }
+
+    @Override
+    public Optional<DbNode> find(UUID guid) {
+        return Optional.ofNullable(index.get(guid));
+    }
+
+    @Override
+    public DbNode addChild(DbNode parent, UUID guid, String value) {
+        return append(node(parent), guid, value);
+    }
+
+    private ObjectDbNode append(ObjectDbNode parent, UUID guid, String value) {
+        ObjectDbNode node = newDbNodeFromExisted(value, parent, guid);
+        ObjectDbNode existed = index.putIfAbsent(guid, node);
+        if (existed != null) {
+            return existed;
+        }
+
+        parent.addChild(node);
+        return node;
+    }
+
+    @Override
+    public void move(DbNode node, DbNode newParent) {
+        ObjectDbNode moved = node(node);
+        if (!moved.getParent().getGuid().equals(newParent.getGuid())) {
+            moveDbNode(moved, node(newParent));
+        }
+    }
+
+    @Override
+    public void setValue(DbNode node, String value) {
+        node(node).setValue(value);
+    }
+
+    @Override
+    public void disable(DbNode node) {
+        node(node).setEnable(false);
+    }
+
+    private ObjectDbNode node(DbNode node) {
+        ObjectDbNode indexed = index.get(node.getGuid());
+        if (indexed == null) {
+            throw new IllegalArgumentException("Unknown node: " + node.getGuid());
+        }
+        return indexed;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.persistent.PersistentDbTree.Record;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+class PersistentDbNode implements DbNode {
+
+    private final PersistentDbTree tree;
+    private final boolean head;
+    private final UUID guid;
+
+    PersistentDbNode(PersistentDbTree tree, boolean head, UUID guid) {
+        this.tree = tree;
+        this.head = head;
+        this.guid = guid;
+    }
+
+    @Override
+    public UUID getGuid() {
+        return guid;
+    }
+
+    @Override
+    public DbNode getParent() {
+        Record record = tree.record(head, guid);
+        return record == null || record.parent == null ? null : new PersistentDbNode(tree, head, record.parent);
+    }
+
+    @Override
+    public List<DbNode> getChilds() {
+        Record record = tree.record(head, guid);
+        if (record == null) {
+            return Collections.emptyList();
+        }
+
+        List<DbNode> nodes = new ArrayList<>(record.childCount);
+        for (int i = 0; i < record.childCount; i++) {
+            nodes.add(new PersistentDbNode(tree, head, record.childs[i]));
+        }
+        return nodes;
+    }
+
+    @Override
+    public List<DbNode> getChilds(int offset, int limit) {
+        Record record = tree.record(head, guid);
+        if (record == null || offset >= record.childCount) {
+            return Collections.emptyList();
+        }
+
+        int to = (int) Math.min((long) offset + limit, record.childCount);
+        List<DbNode> nodes = new ArrayList<>(to - offset);
+        for (int i = offset; i < to; i++) {
+            nodes.add(new PersistentDbNode(tree, head, record.childs[i]));
+        }
+        return nodes;
+    }
+
+    @Override
+    public int getChildCount() {
+        Record record = tree.record(head, guid);
+        return record == null ? 0 : record.childCount;
+    }
+
+    @Override
+    public String getValue() {
+        Record record = tree.record(head, guid);
+        return record == null ? null : record.value;
+    }
+
+    @Override
+    public long getVersion() {
+        Record record = tree.record(head, guid);
+        return record == null ? 0 : record.version;
+    }
+
+    @Override
+    public boolean isEnable() {
+        return tree.isEnabled(head, guid);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PersistentDbNode that = (PersistentDbNode) o;
+        return tree == that.tree && guid.equals(that.guid);
+    }
+
+    @Override
+    public int hashCode() {
+        return guid.hashCode();
+    }
+}
@@ -0,0 +1,326 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+class PersistentDbTree implements DbTree {
+
+    private static final int MIN_CHILDS_CAPACITY = 4;
+
+    private final int maxVersions;
+    private final Lock transactions;
+    private final Deque<Version> history;
+    private volatile Version published;
+    private volatile Version working;
+    private Object transaction;
+
+    PersistentDbTree(UUID rootGuid, String rootValue, int maxVersions) {
+        this.maxVersions = maxVersions;
+        this.transactions = new ReentrantLock();
+        this.history = new ArrayDeque<>();
+        Record root = new Record(rootGuid, null, rootValue, false, 0, new UUID[0], 0, null);
+        this.published = new Version(GuidTrie.<Record>empty().put(rootGuid, root), rootGuid, null);
+    }
+
+    static PersistentDbTree copyOf(DbNode root, int maxVersions) {
+        PersistentDbTree tree = new PersistentDbTree(root.getGuid(), root.getValue(), maxVersions);
+        tree.atomically(null, () -> preOrder(root, node -> {
+            if (node.getParent() != null) {
+                tree.append(node.getParent().getGuid(), node.getGuid(), node.getValue());
+            }
+            if (!node.isEnable() && (node.getParent() == null || node.getParent().isEnable())) {
+                tree.disable(node.getGuid());
+            }
+        }));
+        tree.history.clear();
+        return tree;
+    }
+
+    @Override
+    public DbNode getRoot() {
+        return new PersistentDbNode(this, false, published.root);
+    }
+
+    @Override
+    public DbNode getLatestRoot() {
+        return new PersistentDbNode(this, true, head().root);
+    }
+
+    @Override
+    public Optional<DbNode> find(UUID guid) {
+        return head().records.get(guid) == null ?
+                Optional.empty() :
+                Optional.of(new PersistentDbNode(this, true, guid));
+    }
+
+    @Override
+    public DbNode addChild(DbNode parent, UUID guid, String value) {
+        append(parent.getGuid(), guid, value);
+        return new PersistentDbNode(this, true, guid);
+    }
+
+    @Override
+    public void move(DbNode node, DbNode newParent) {
+        move(node.getGuid(), newParent.getGuid());
+    }
+
+    @Override
+    public void setValue(DbNode node, String value) {
+        setValue(node.getGuid(), value);
+    }
+
+    @Override
+    public void disable(DbNode node) {
+        disable(node.getGuid());
+    }
+
+    @Override
+    public int size() {
+        return head().records.size();
+    }
+
+    @Override
+    public boolean isAtomic() {
+        return true;
+    }
+
+    @Override
+    public void atomically(UUID workspace, Runnable changes) {
+        transactions.lock();
+        try {
+            synchronized (this) {
+                working = published;
+                transaction = new Object();
+            }
+
+            boolean applied = false;
+            try {
+                changes.run();
+                applied = true;
+            } finally {
+                synchronized (this) {
+                    if (applied && working != published) {
+                        pushHistory(published);
+                        published = new Version(working.records, working.root, workspace);
+                    }
+                    working = null;
+                    transaction = null;
+                }
+            }
+        } finally {
+            transactions.unlock();
+        }
+    }
+
+    @Override
+    public synchronized boolean canRevert(UUID workspace) {
+        return !history.isEmpty() && workspace != null && workspace.equals(published.workspace);
+    }
+
+    @Override
+    public boolean revert(UUID workspace) {
+        transactions.lock();
+        try {
+            synchronized (this) {
+                if (!canRevert(workspace)) {
+                    return false;
+                }
+                published = history.pop();
+                return true;
+            }
+        } finally {
+            transactions.unlock();
+        }
+    }
+
+    @Override
+    public Supplier<CompactDbTree> snapshot() {
+        Version version = published;
+        return () -> {
+            Record root = version.records.get(version.root);
+            CompactDbTree copy = new CompactDbTree(root.guid, root.value);
+            Deque<Record> records = new ArrayDeque<>();
+            Deque<Integer> indexes = new ArrayDeque<>();
+            records.push(root);
+            indexes.push(0);
+
+            while (!records.isEmpty()) {
+                Record record = records.pop();
+                int index = indexes.pop();
+                if (record.removed) {
+                    copy.disable(index);
+                }
+                for (int i = 0; i < record.childCount; i++) {
+                    Record child = version.records.get(record.childs[i]);
+                    records.push(child);
+                    indexes.push(copy.appendChild(index, child.guid, child.value));
+                }
+            }
+            return copy;
+        };
+    }
+
+    Record record(boolean head, UUID guid) {
+        return version(head).records.get(guid);
+    }
+
+    boolean isEnabled(boolean head, UUID guid) {
+        Version version = version(head);
+        Record record = version.records.get(guid);
+        if (record == null) {
+            return false;
+        }
+
+        for (; record != null; record = record.parent == null ? null : version.records.get(record.parent)) {
+            if (record.removed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Version version(boolean head) {
+        return head ? head() : published;
+    }
+
+    private Version head() {
+        Version version = working;
+        return version != null ? version : published;
+    }
+
+    synchronized void append(UUID parentGuid, UUID guid, String value) {
+        Version version = head();
+        Record parent = version.records.get(parentGuid);
+        if (parent == null) {
+            throw new IllegalArgumentException("Unknown parent: " + parentGuid);
+        }
+        if (version.records.get(guid) != null) {
+            return;
+        }
+
+        Object owner = owner();
+        GuidTrie<Record> records = version.records
+                .put(parentGuid, withChild(parent, guid, owner))
+                .put(guid, new Record(guid, parentGuid, value, false, 0, new UUID[0], 0, owner));
+        apply(new Version(records, version.root, null));
+    }
+
+    synchronized void move(UUID guid, UUID parentGuid) {
+        Version version = head();
+        Record record = version.records.get(guid);
+        Record parent = version.records.get(parentGuid);
+        if (record == null || parent == null || record.parent == null) {
+            throw new IllegalArgumentException("Unknown node or parent: " + guid + ", " + parentGuid);
+        }
+        if (record.parent.equals(parentGuid)) {
+            return;
+        }
+
+        Object owner = owner();
+        Record previous = version.records.get(record.parent);
+        UUID[] previousChilds = new UUID[Math.max(MIN_CHILDS_CAPACITY, previous.childCount)];
+        int previousCount = 0;
+        for (int i = 0; i < previous.childCount; i++) {
+            if (!previous.childs[i].equals(guid)) {
+                previousChilds[previousCount++] = previous.childs[i];
+            }
+        }
+
+        GuidTrie<Record> records = version.records
+                .put(previous.guid, new Record(previous.guid, previous.parent, previous.value, previous.removed, previous.version, previousChilds, previousCount, owner))
+                .put(parentGuid, withChild(parent, guid, owner))
+                .put(guid, new Record(guid, parentGuid, record.value, record.removed, record.version, record.childs, record.childCount, record.owner));
+        apply(new Version(records, version.root, null));
+    }
+
+    private static Record withChild(Record parent, UUID guid, Object owner) {
+        UUID[] childs = parent.childs;
+        if (parent.owner != owner || parent.childCount == childs.length) {
+            childs = Arrays.copyOf(childs, Math.max(MIN_CHILDS_CAPACITY, parent.childCount * 2));
+        }
+        childs[parent.childCount] = guid;
+        return new Record(parent.guid, parent.parent, parent.value, parent.removed, parent.version, childs, parent.childCount + 1, owner);
+    }
+
+    synchronized void setValue(UUID guid, String value) {
+        update(guid, record -> new Record(record.guid, record.parent, value, record.removed, record.version + 1, record.childs, record.childCount, record.owner));
+    }
+
+    synchronized void disable(UUID guid) {
+        update(guid, record -> new Record(record.guid, record.parent, record.value, true, record.version + 1, record.childs, record.childCount, record.owner));
+    }
+
+    private void update(UUID guid, UnaryOperator<Record> change) {
+        Version version = head();
+        Record record = version.records.get(guid);
+        if (record != null) {
+            apply(new Version(version.records.put(guid, change.apply(record)), version.root, null));
+        }
+    }
+
+    private Object owner() {
+        return transaction != null ? transaction : new Object();
+    }
+
+    private void apply(Version version) {
+        if (working != null) {
+            working = version;
+        } else {
+            published = version;
+        }
+    }
+
+    private void pushHistory(Version version) {
+        history.push(version);
+        while (history.size() > maxVersions) {
+            history.removeLast();
+        }
+    }
+
+    private static final class Version {
+
+        private final GuidTrie<Record> records;
+        private final UUID root;
+        private final UUID workspace;
+
+        private Version(GuidTrie<Record> records, UUID root, UUID workspace) {
+            this.records = records;
+            this.root = root;
+            this.workspace = workspace;
+        }
+    }
+
+    static final class Record {
+
+        final UUID guid;
+        final UUID parent;
+        final String value;
+        final boolean removed;
+        final long version;
+        final UUID[] childs;
+        final int childCount;
+        private final Object owner;
+
+        private Record(UUID guid, UUID parent, String value, boolean removed, long version, UUID[] childs, int childCount, Object owner) {
+            this.guid = guid;
+            this.parent = parent;
+            this.value = value;
+            this.removed = removed;
+            this.version = version;
+            this.childs = childs;
+            this.childCount = childCount;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.pes.treeview.core.persistent;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+class StripedLocks {
+
+    private final Lock[] stripes;
+    private final Timer lockWait;
+
+    StripedLocks(int size, Timer lockWait) {
+        this.lockWait = lockWait;
+        stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    void run(UUID guid, Runnable action) {
+        call(guid, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    <T> T call(UUID guid, Supplier<T> action) {
+        Lock lock = stripes[Math.floorMod(guid.hashCode(), stripes.length)];
+        long started = System.nanoTime();
+        lock.lock();
+        lockWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    <T> T callExclusive(Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                stripes[locked].lock();
+            }
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                stripes[--locked].unlock();
+            }
+        }
+    }
+}
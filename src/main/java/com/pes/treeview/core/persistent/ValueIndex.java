@@ -0,0 +1,182 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static com.pes.treeview.core.domain.Trees.preOrder;
+
+class ValueIndex {
+
+    private static final UUID MIN_GUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final NavigableSet<Posting> postings = new ConcurrentSkipListSet<>();
+    private final CompactDbTree slots;
+
+    ValueIndex() {
+        this(null);
+    }
+
+    private ValueIndex(CompactDbTree slots) {
+        this.slots = slots;
+    }
+
+    static <T extends Node<T>> ValueIndex of(T root) {
+        ValueIndex index = root instanceof CompactDbNode ? new ValueIndex(((CompactDbNode) root).tree()) : new ValueIndex();
+        Map<String, String> distinct = new HashMap<>();
+        List<Posting> loaded = new ArrayList<>();
+        preOrder(root, node -> {
+            if (node.isEnable()) {
+                tokens(node.getValue()).forEach(token -> loaded.add(index.posting(distinct.computeIfAbsent(token, t -> t), node)));
+            }
+        });
+
+        Posting[] sorted = loaded.toArray(new Posting[0]);
+        Arrays.parallelSort(sorted);
+        index.postings.addAll(Arrays.asList(sorted));
+        return index;
+    }
+
+    void add(UUID guid, String value) {
+        tokens(value).forEach(token -> postings.add(posting(canonical(token), guid)));
+    }
+
+    void remove(UUID guid, String value) {
+        tokens(value).forEach(token -> postings.remove(posting(token, guid)));
+    }
+
+    Iterable<UUID> candidates(String query) {
+        List<String> tokens = tokens(query);
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String prefix = tokens.get(0);
+        Iterator<Posting> range = postings.subSet(lowest(prefix), true, lowest(prefix + Character.MAX_VALUE), false).iterator();
+
+        return () -> new Iterator<UUID>() {
+            @Override
+            public boolean hasNext() {
+                return range.hasNext();
+            }
+
+            @Override
+            public UUID next() {
+                Posting posting = range.next();
+                return slots == null ? ((GuidPosting) posting).guid : slots.guid(((SlotPosting) posting).slot);
+            }
+        };
+    }
+
+    private String canonical(String token) {
+        Posting existed = postings.ceiling(lowest(token));
+        return existed != null && existed.token.equals(token) ? existed.token : token;
+    }
+
+    private Posting lowest(String token) {
+        return slots == null ? new GuidPosting(token, MIN_GUID) : new SlotPosting(token, Integer.MIN_VALUE);
+    }
+
+    private Posting posting(String token, UUID guid) {
+        return slots == null ? new GuidPosting(token, guid) : new SlotPosting(token, slots.index(guid));
+    }
+
+    private Posting posting(String token, Node<?> node) {
+        if (slots != null && node instanceof CompactDbNode) {
+            return new SlotPosting(token, ((CompactDbNode) node).index());
+        }
+        return posting(token, node.getGuid());
+    }
+
+    static boolean matches(String value, String query) {
+        String normalizedValue = value.toLowerCase(Locale.ROOT);
+        String normalizedQuery = query.trim().toLowerCase(Locale.ROOT);
+        if (normalizedQuery.isEmpty()) {
+            return false;
+        }
+
+        for (int from = normalizedValue.indexOf(normalizedQuery); from >= 0; from = normalizedValue.indexOf(normalizedQuery, from + 1)) {
+            if (from == 0 || !Character.isLetterOrDigit(normalizedValue.charAt(from - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> tokens(String value) {
+        List<String> tokens = new ArrayList<>(2);
+        if (value == null) {
+            return tokens;
+        }
+
+        String normalized = value.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private abstract static class Posting implements Comparable<Posting> {
+
+        private final String token;
+
+        private Posting(String token) {
+            this.token = token;
+        }
+
+        abstract int compareKey(Posting other);
+
+        @Override
+        public int compareTo(Posting other) {
+            int byToken = token.compareTo(other.token);
+            return byToken != 0 ? byToken : compareKey(other);
+        }
+    }
+
+    private static final class GuidPosting extends Posting {
+
+        private final UUID guid;
+
+        private GuidPosting(String token, UUID guid) {
+            super(token);
+            this.guid = guid;
+        }
+
+        @Override
+        int compareKey(Posting other) {
+            return guid.compareTo(((GuidPosting) other).guid);
+        }
+    }
+
+    private static final class SlotPosting extends Posting {
+
+        private final int slot;
+
+        private SlotPosting(String token, int slot) {
+            super(token);
+            this.slot = slot;
+        }
+
+        @Override
+        int compareKey(Posting other) {
+            return Integer.compare(slot, ((SlotPosting) other).slot);
+        }
+    }
+}
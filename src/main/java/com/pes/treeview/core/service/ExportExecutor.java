@@ -0,0 +1,75 @@
+package com.pes.treeview.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+public class ExportExecutor implements Executor {
+
+    private final boolean async;
+    private final ThreadPoolExecutor executor;
+
+    public ExportExecutor(
+            @Value("${tree-view.export.async.enabled:false}") boolean async,
+            @Value("${tree-view.export.async.threads:2}") int threads,
+            @Value("${tree-view.export.async.queue:8}") int queue
+    ) {
+        this.async = async;
+        this.executor = async ?
+                new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), threadFactory()) :
+                null;
+        log.info("Async export: " + (async ? threads + " threads, " + queue + " queued" : "disabled"));
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int queued() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (executor == null) {
+            command.run();
+        } else {
+            executor.execute(command);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "export-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            log.info("Async export runs on virtual threads");
+            return factory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return task -> {
+                Thread thread = new Thread(task, "export-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.pes.treeview.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
+
+@Slf4j
+@Component
+public class ExportPool {
+
+    private final ForkJoinPool pool;
+
+    public ExportPool(
+            @Value("${tree-view.export.parallel:false}") boolean parallel,
+            @Value("${tree-view.export.parallelism:0}") int parallelism
+    ) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = parallel ? new ForkJoinPool(threads) : null;
+        log.info("Export mode: " + (parallel ? "parallel on " + threads + " threads" : "sequential"));
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public <T> void forEach(Collection<T> units, Consumer<T> action) {
+        if (pool == null || units.size() < 2) {
+            units.forEach(action);
+            return;
+        }
+
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(units.stream()
+                .map(unit -> ForkJoinTask.adapt(() -> action.accept(unit)))
+                .collect(toList()))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
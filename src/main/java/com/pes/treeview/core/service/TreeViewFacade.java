@@ -2,27 +2,52 @@ package com.pes.treeview.core.service;
 
 import com.pes.treeview.core.domain.CacheNode;
 import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.ExportConflict;
+import com.pes.treeview.core.domain.ExportReport;
 import com.pes.treeview.core.domain.Node;
+import com.pes.treeview.core.domain.SearchHit;
+import com.pes.treeview.core.event.NodeChange;
+import com.pes.treeview.core.event.NodeEvent;
+import com.pes.treeview.core.event.NodeEvents;
+import com.pes.treeview.core.metrics.TreeMetrics;
 import com.pes.treeview.core.persistent.CacheTreeStorage;
 import com.pes.treeview.core.persistent.DBTreeStorage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.vaadin.flow.spring.annotation.UIScope;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static com.pes.treeview.core.domain.Nodes.newCacheNode;
-import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Trees.preOrder;
 import static java.util.Collections.singletonList;
 
 @RequiredArgsConstructor
 @Slf4j
+@UIScope
 @Service
 public class TreeViewFacade {
 
     private final CacheTreeStorage cacheTreeStorage;
     private final DBTreeStorage dbTreeStorage;
+    private final ExportPool exportPool;
+    private final ExportExecutor exportExecutor;
+    private final TreeMetrics metrics;
+
+    @PostConstruct
+    public void init() {
+        cacheTreeStorage.setReloader(this::reloadCacheNode);
+        cacheTreeStorage.setSyncedSequence(dbTreeStorage.getSequence());
+    }
 
     public List<Node> getCacheTree() {
         return new ArrayList<>(cacheTreeStorage.getCache());
@@ -32,185 +57,617 @@ public class TreeViewFacade {
         return singletonList(dbTreeStorage.getTree());
     }
 
+    public NodeEvents.Subscription subscribeCache(Consumer<NodeEvent> listener) {
+        return cacheTreeStorage.subscribe(listener);
+    }
+
+    public NodeEvents.Subscription subscribeDb(Consumer<NodeEvent> listener) {
+        return dbTreeStorage.subscribe(listener);
+    }
+
+    public List<SearchHit> searchCache(String query, int limit) {
+        return cacheTreeStorage.search(query, limit);
+    }
+
+    public List<SearchHit> searchDb(String query, int limit) {
+        return dbTreeStorage.search(query, limit);
+    }
+
     public void reset() {
         cacheTreeStorage.reset();
         dbTreeStorage.reset();
+        cacheTreeStorage.setSyncedSequence(dbTreeStorage.getSequence());
     }
 
     public void importToChache(Node externalNode) {
         log.info("Import to cache: " + externalNode.getValue());
+        metrics.getImportNode().record(() -> importNodeToChache(externalNode));
+    }
+
+    public void importToChache(Collection<? extends Node> externalNodes) {
+        log.info("Import to cache: " + externalNodes.size() + " nodes");
+        List<Node> ordered = new ArrayList<>(externalNodes);
+        ordered.sort(Comparator.comparingInt(node -> findDbNode(node).map(dbTreeStorage::depth).orElse(0)));
+        metrics.getImportBatch().record(() -> cacheTreeStorage.batch(() -> ordered.forEach(this::importNodeToChache)));
+    }
+
+    public void importSubtreeToChache(Node externalRoot) {
+        log.info("Import subtree to cache: " + externalRoot.getValue());
+        findDbNode(externalRoot).ifPresent(dbRoot -> metrics.getImportSubtree().record(() -> {
+            int[] visited = new int[1];
+            cacheTreeStorage.batch(() -> preOrder(dbRoot, node -> {
+                visited[0]++;
+                importNodeToChache(node);
+            }));
+            metrics.getTraversalImportSubtree().record(visited[0]);
+        }));
+    }
+
+    private void importNodeToChache(Node externalNode) {
         if (externalNode.isEnable() && !findCacheNode(externalNode).isPresent()) {
-            Optional<CacheNode> parent = externalNode.getParent() != null ?
-                    findCacheNode(externalNode.getParent()) :
-                    Optional.empty();
-            List<CacheNode> childs = cacheTreeStorage.getChildsFromCache(externalNode);
+            findDbNode(externalNode).ifPresent(dbNode -> {
+                Optional<CacheNode> parent = dbNode.getParent() != null ?
+                        findCacheNode(dbNode.getParent()) :
+                        Optional.empty();
+                List<CacheNode> childs = cacheTreeStorage.getChildsFromCache(dbNode);
 
-            cacheTreeStorage.importToChache(externalNode, parent.orElse(null), childs);
+                cacheTreeStorage.importToChache(dbNode, parent.orElse(null), childs);
 
-            cacheTreeStorage.removeChildsFromCache(externalNode);
+                cacheTreeStorage.removeChildsFromCache(dbNode);
+            });
         }
     }
 
     public void addNewToCache(Node node, String value) {
         log.info("Import to cache: " + value);
-        findCacheNode(node).ifPresent(cacheNode -> cacheNode.addChild(newCacheNode(value, cacheNode)));
+        metrics.getCacheAdd().record(() -> findOrReloadCacheNode(node)
+                .ifPresent(cacheNode -> cacheTreeStorage.addChild(cacheNode, newCacheNode(value, cacheNode))));
+    }
+
+    public void changeValueInCache(Node node, String value) {
+        log.info("Change in cache: " + node.getValue() + " to " + value);
+        findOrReloadCacheNode(node).ifPresent(cacheNode -> cacheTreeStorage.changeValue(cacheNode, value));
     }
 
     public void disableInCache(Node node) {
         log.info("Mark as removed: " + node.getValue());
-        findCacheNode(node).ifPresent(foundNode -> foundNode.setEnable(false));
+        metrics.getCacheDisable().record(() -> findOrReloadCacheNode(node).ifPresent(cacheTreeStorage::disable));
     }
 
-    public void exportCacheToDb() {
-        log.info("Push cache to db!");
-        cacheTreeStorage.getCache().forEach(tree -> traverseTree(tree, exportCacheNodeToDb()));
-        log.info("Refresh cache from db!");
-        cacheTreeStorage.getCache().forEach(tree -> traverseTree(tree, refreshCacheNodeFromDb()));
-    }
+    public boolean moveInCache(Node node, Node newParent) {
+        log.info("Move in cache: " + node.getValue() + " to " + newParent.getValue());
+        return metrics.getCacheMove().record(() -> {
+            Optional<CacheNode> cacheNode = findOrReloadCacheNode(node);
+            Optional<CacheNode> cacheParent = findOrReloadCacheNode(newParent);
+            if (!cacheNode.isPresent() || !cacheParent.isPresent() ||
+                    !cacheNode.get().isEnable() || !cacheParent.get().isEnable()) {
+                return false;
+            }
+            if (cacheNode.get().getParent() == cacheParent.get()) {
+                return true;
+            }
+            if (cacheNode.get().getParent() == null && !findDbNode(node).map(DbNode::getParent).isPresent()) {
+                log.warn("Can't move: " + node.getValue() + ", because it is the root");
+                return false;
+            }
+            if (isAncestor(cacheNode.get(), cacheParent.get())) {
+                log.warn("Can't move: " + node.getValue() + ", because " + newParent.getValue() + " is in its subtree");
+                return false;
+            }
 
-    private Function<CacheNode, CacheNode> exportCacheNodeToDb() {
-        return node -> {
+            cacheTreeStorage.move(cacheNode.get(), cacheParent.get());
+            return true;
+        });
+    }
 
-            if (!node.isEnable() && node.isCopied()) {
-                disableDbNode(node);
+    private boolean isAncestor(CacheNode ancestor, CacheNode node) {
+        Node current = node;
+        while (current != null) {
+            if (current.getGuid().equals(ancestor.getGuid())) {
+                return true;
             }
 
-            if (node.isEnable() && !node.isCopied()) {
-                addNewDbNode(node);
-            }
+            Node cacheParent = findCacheNode(current).map(CacheNode::getParent).orElse(null);
+            current = cacheParent != null ? cacheParent : findDbNode(current).map(DbNode::getParent).orElse(null);
+        }
+        return false;
+    }
 
-            if (node.isEnable() && node.isChanged()) {
-                changeValueForDbNode(node);
-            }
+    public boolean isExportAsync() {
+        return exportExecutor.isAsync();
+    }
 
-            return null;
-        };
+    public ExportReport exportCacheToDb() {
+        Export export = new Export(cacheTreeStorage.pollChanges(), (done, total) -> {
+        });
+        try {
+            pushToDb(export);
+        } catch (RuntimeException e) {
+            log.warn("Export failed, changes stay pending: " + e.getMessage());
+            export.changes.forEach(cacheTreeStorage::markPending);
+            throw e;
+        }
+        return refreshFromDb(export);
+    }
+
+    public CompletableFuture<ExportReport> exportCacheToDbAsync(BiConsumer<Integer, Integer> progress, Executor ui) {
+        Export export = new Export(cacheTreeStorage.pollChanges(), progress);
+        try {
+            return CompletableFuture.runAsync(() -> pushToDb(export), exportExecutor)
+                    .handleAsync((ignored, error) -> {
+                        if (error != null) {
+                            log.warn("Export failed, changes stay pending: " + error.getMessage());
+                            export.changes.forEach(cacheTreeStorage::markPending);
+                            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                        }
+                        return refreshFromDb(export);
+                    }, ui);
+        } catch (RejectedExecutionException e) {
+            log.warn("Export rejected, too many exports in progress");
+            export.changes.forEach(cacheTreeStorage::markPending);
+            throw e;
+        }
     }
 
-    private Function<CacheNode, CacheNode> refreshCacheNodeFromDb() {
-        return node -> {
-            findDbNode(node).ifPresent(dbNode -> {
-                node.setValue(dbNode.getValue());
-                node.setEnable(dbNode.isEnable());
+    private void pushToDb(Export export) {
+        log.info("Push cache to db: " + export.changes.size() + " changed nodes in " + export.units.size() + " units");
+        metrics.getExportChanges().record(export.changes.size());
+        metrics.getExportUnits().record(export.units.size());
+        metrics.getExportPush().record(() -> dbTreeStorage.transaction(cacheTreeStorage.getWorkspace(), () -> exportPool.forEach(export.units, unit -> {
+            List<ExportConflict> unitConflicts = new ArrayList<>();
+            unit.forEach(node -> {
+                exportCacheNodeToDb(node, unitConflicts);
+                export.progress.accept(export.done.incrementAndGet(), export.changes.size());
             });
+            export.conflicts.addAll(unitConflicts);
+        })));
+        dbTreeStorage.commit();
+    }
 
-            return null;
-        };
+    private ExportReport refreshFromDb(Export export) {
+        return metrics.getExportRefresh().record(() -> refreshCacheFromDb(export));
     }
 
-    private void disableDbNode(Node node) {
-        findDbNode(node).ifPresent(dbNode -> dbNode.setEnable(false));
+    private ExportReport refreshCacheFromDb(Export export) {
+        export.exported.values().forEach(this::settleExported);
+        metrics.getExportConflicts().increment(export.conflicts.size());
+        export.conflicts.stream()
+                .filter(conflict -> conflict.getType() != ExportConflict.Type.PARENT_REMOVED)
+                .filter(conflict -> conflict.getType() != ExportConflict.Type.CYCLE)
+                .forEach(conflict -> cacheTreeStorage.markPending(conflict.getNode()));
+        syncCacheWithDb();
+        if (!export.conflicts.isEmpty()) {
+            log.warn("Export conflicts: " + export.conflicts.size() + " nodes were changed in db since import");
+        }
+        return new ExportReport(export.changes.size() - export.conflicts.size(), new ArrayList<>(export.conflicts));
     }
 
-    private void addNewDbNode(CacheNode node) {
-        if (isPermittedToAddNewDbNode(node)) {
-            DbNode newNodeParent = createDbParentRecursively(node.getParent());
-            DbNode newNode = newDbNodeFromExisted(node.getValue(), newNodeParent, node.getGuid());
-            newNodeParent.addChild(newNode);
+    private void settleExported(ExportedNode exported) {
+        CacheNode node = exported.node;
+        if (exported.copied) {
             node.setCopied(true);
+        }
+        if (!exported.changed && Objects.equals(node.getValue(), exported.value)) {
             node.setChanged(false);
         }
+        if (!exported.moved && Objects.equals(parentGuid(node), exported.parentGuid)) {
+            node.setMoved(false);
+        }
+        if (exported.written && (node.isChanged() || node.isMoved() || cacheTreeStorage.isPending(node))) {
+            findDbNode(node)
+                    .filter(dbNode -> Objects.equals(dbNode.getValue(), exported.value))
+                    .ifPresent(dbNode -> node.setVersion(dbNode.getVersion()));
+        }
     }
 
-    private boolean isPermittedToAddNewDbNode(CacheNode node) {
-        CacheNode parent = node.getParent();
+    private static UUID parentGuid(CacheNode node) {
+        return node.getParent() == null ? null : node.getParent().getGuid();
+    }
 
-        while (parent != null) {
-            DbNode dbNode = findDbNode(parent).orElse(null);
+    public void syncCacheWithDb() {
+        metrics.getCacheSync().record(() -> {
+            long synced = cacheTreeStorage.getSyncedSequence();
+            long sequence = dbTreeStorage.getSequence();
+            Optional<List<NodeChange>> changes = dbTreeStorage.changesSince(synced);
+            if (!changes.isPresent()) {
+                log.info("Resync cache with db: " + (sequence - synced) + " changes behind");
+                resyncCache();
+                cacheTreeStorage.setSyncedSequence(sequence);
+                return;
+            }
+            if (changes.get().isEmpty()) {
+                return;
+            }
 
-            if (dbNode == null) {
-                parent = parent.getParent();
-                continue;
+            log.info("Sync cache with db: " + changes.get().size() + " changes");
+            metrics.getSyncChanges().record(changes.get().size());
+            Set<UUID> changed = new LinkedHashSet<>();
+            Set<UUID> disabled = new LinkedHashSet<>();
+            changes.get().forEach(change -> {
+                changed.add(change.getGuid());
+                if (change.getType() == NodeEvent.Type.DISABLED) {
+                    disabled.add(change.getGuid());
+                }
+            });
+
+            changed.forEach(guid -> cacheTreeStorage.findNode(guid).ifPresent(this::syncCacheNode));
+            if (!disabled.isEmpty()) {
+                List<DbNode> disabledNodes = new ArrayList<>();
+                disabled.forEach(guid -> dbTreeStorage.findNode(guid).ifPresent(disabledNodes::add));
+                new ArrayList<>(cacheTreeStorage.getCache()).stream()
+                        .filter(root -> findDbNode(root).filter(dbRoot -> hasDisabledAncestor(dbRoot, disabledNodes)).isPresent())
+                        .forEach(this::syncCacheNode);
             }
+            cacheTreeStorage.setSyncedSequence(changes.get().get(changes.get().size() - 1).getSequence());
+        });
+    }
 
-            if (dbNode.isEnable()) {
+    private boolean hasDisabledAncestor(DbNode node, List<DbNode> disabled) {
+        for (DbNode ancestor : disabled) {
+            if (dbTreeStorage.isAncestor(ancestor, node)) {
                 return true;
             }
+        }
+        return false;
+    }
 
-            log.warn("Can't export: " + node.getValue() + ", because ancestor in db: " + dbNode.getValue() + " is disabled");
+    private void resyncCache() {
+        int[] visited = new int[1];
+        cacheTreeStorage.forEachNode(node -> {
+            visited[0]++;
+            syncCacheNode(node);
+        });
+        metrics.getTraversalCacheResync().record(visited[0]);
+    }
+
+    private void syncCacheNode(CacheNode node) {
+        if (!node.isCopied() || node.isChanged() || node.isMoved() || cacheTreeStorage.isPending(node)) {
+            return;
+        }
+
+        findDbNode(node).ifPresent(dbNode -> {
+            long version = dbNode.getVersion();
+            cacheTreeStorage.refresh(node, dbNode.getValue(), dbNode.isEnable(), version);
+            if (dbNode.getParent() != null) {
+                cacheTreeStorage.restore(node, dbNode.getParent().getGuid());
+            }
+        });
+    }
+
+    public void resolveConflict(ExportConflict conflict, boolean keepCacheValue) {
+        CacheNode node = conflict.getNode();
+        Optional<DbNode> dbNode = findDbNode(node);
+        log.info("Resolve conflict: " + node.getValue() + (keepCacheValue ? ", keep cache value" : ", keep db value"));
+
+        if (keepCacheValue && conflict.getType() == ExportConflict.Type.CHANGED && dbNode.isPresent()) {
+            node.setVersion(dbNode.get().getVersion());
+            cacheTreeStorage.markPending(node);
+        } else if (conflict.getType() == ExportConflict.Type.PARENT_REMOVED && !dbNode.isPresent()) {
+            node.setChanged(false);
+            cacheTreeStorage.disable(node);
+        } else if ((conflict.getType() == ExportConflict.Type.CYCLE || conflict.getType() == ExportConflict.Type.PARENT_REMOVED)
+                && dbNode.map(DbNode::getParent).isPresent()) {
+            cacheTreeStorage.restore(node, dbNode.get().getParent().getGuid());
+        } else {
+            node.setChanged(false);
+            refreshCacheNodeFromDb(node);
+        }
+    }
+
+    public boolean canUndoExport() {
+        return dbTreeStorage.canUndo(cacheTreeStorage.getWorkspace());
+    }
+
+    public boolean undoExport() {
+        log.info("Undo last export");
+        if (!dbTreeStorage.undo(cacheTreeStorage.getWorkspace())) {
+            log.warn("Can't undo: the latest db version was not exported from this workspace");
             return false;
         }
 
+        cacheTreeStorage.forEachNode(node -> {
+            Optional<DbNode> dbNode = findDbNode(node);
+            dbNode.ifPresent(restored -> node.setVersion(restored.getVersion()));
+            if (!dbNode.isPresent()) {
+                if (node.isCopied()) {
+                    node.setCopied(false);
+                    cacheTreeStorage.markPending(node);
+                }
+            } else if (!Objects.equals(dbNode.get().getValue(), node.getValue())) {
+                node.setChanged(true);
+                cacheTreeStorage.markPending(node);
+            } else if (!node.isEnable() && dbNode.get().isEnable()) {
+                cacheTreeStorage.markPending(node);
+            }
+            if (dbNode.isPresent() && node.getParent() != null && dbNode.get().getParent() != null &&
+                    !dbNode.get().getParent().getGuid().equals(node.getParent().getGuid())) {
+                node.setMoved(true);
+                cacheTreeStorage.markPending(node);
+            }
+        });
+        cacheTreeStorage.setSyncedSequence(dbTreeStorage.getSequence());
         return true;
     }
 
-    private void changeValueForDbNode(CacheNode node) {
-        findDbNode(node).filter(DbNode::isEnable).ifPresent(dbNode -> dbNode.setValue(node.getValue()));
-        node.setChanged(false);
+    private Collection<List<CacheNode>> partitionChanges(List<CacheNode> changes) {
+        if (!exportPool.isParallel() || changes.size() < 2) {
+            return changes.isEmpty() ? Collections.emptyList() : singletonList(changes);
+        }
+
+        Map<CacheNode, CacheNode> cacheRoots = new HashMap<>();
+        Map<UUID, CacheNode> roots = new LinkedHashMap<>();
+        changes.forEach(node -> {
+            CacheNode root = cacheRoot(node, cacheRoots);
+            roots.put(root.getGuid(), root);
+        });
+
+        Map<UUID, Optional<CacheNode>> resolved = new HashMap<>();
+        Map<CacheNode, CacheNode> unitRoots = new HashMap<>();
+        int[] visited = new int[1];
+        roots.values().forEach(root -> unitRoots.put(root, unitRoot(root, roots, resolved, visited)));
+        metrics.getTraversalExportPartition().record(visited[0]);
+
+        Map<CacheNode, List<CacheNode>> units = new LinkedHashMap<>();
+        changes.forEach(node -> units.computeIfAbsent(unitRoots.get(cacheRoots.get(node)), root -> new ArrayList<>()).add(node));
+        return units.values();
     }
 
-    private DbNode createDbParentRecursively(CacheNode treeParent) {
-        Optional<DbNode> newNodeParent = findDbNode(treeParent);
+    private CacheNode unitRoot(CacheNode root, Map<UUID, CacheNode> roots, Map<UUID, Optional<CacheNode>> resolved, int[] visited) {
+        List<UUID> path = new ArrayList<>();
+        Optional<CacheNode> top = Optional.empty();
+        for (DbNode ancestor = findDbNode(root).map(DbNode::getParent).orElse(null); ancestor != null; ancestor = ancestor.getParent()) {
+            Optional<CacheNode> known = resolved.get(ancestor.getGuid());
+            if (known != null) {
+                top = known;
+                break;
+            }
+            path.add(ancestor.getGuid());
+            visited[0]++;
+        }
 
-        if (newNodeParent.isPresent()) {
-            return newNodeParent.get();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            if (!top.isPresent()) {
+                top = Optional.ofNullable(roots.get(path.get(i)));
+            }
+            resolved.put(path.get(i), top);
+        }
+        return top.orElse(root);
+    }
+
+    private static CacheNode cacheRoot(CacheNode node, Map<CacheNode, CacheNode> cacheRoots) {
+        List<CacheNode> path = new ArrayList<>();
+        CacheNode root = node;
+        while (!cacheRoots.containsKey(root) && root.getParent() != null) {
+            path.add(root);
+            root = root.getParent();
         }
+        root = cacheRoots.getOrDefault(root, root);
+        for (CacheNode visited : path) {
+            cacheRoots.put(visited, root);
+        }
+        cacheRoots.putIfAbsent(root, root);
+        return root;
+    }
 
-        DbNode parent = createDbParentRecursively(treeParent.getParent());
+    private void exportCacheNodeToDb(ExportedNode node, List<ExportConflict> conflicts) {
+        if (!node.enable && node.copied) {
+            disableDbNode(node, conflicts);
+        }
 
-        DbNode newNode = newDbNodeFromExisted(treeParent.getValue(), parent, treeParent.getGuid());
-        parent.addChild(newNode);
-        treeParent.setCopied(true);
-        treeParent.setChanged(false);
-        return newNode;
+        if (node.enable && !node.copied) {
+            addNewDbNode(node, conflicts);
+        }
+
+        if (node.enable && node.moved) {
+            moveDbNode(node, conflicts);
+        }
+
+        if (node.enable && node.changed) {
+            changeValueForDbNode(node, conflicts);
+        }
     }
 
-    private Optional<DbNode> findDbNode(Node node) {
-        return findNodeByGuid(dbTreeStorage.getTree(), node.getGuid());
+    private void refreshCacheNodeFromDb(CacheNode node) {
+        findDbNode(node).ifPresent(dbNode -> {
+            long version = dbNode.getVersion();
+            cacheTreeStorage.refresh(node, dbNode.getValue(), dbNode.isEnable(), version);
+        });
     }
 
-    private Optional<CacheNode> findCacheNode(Node node) {
-        return cacheTreeStorage.getCache().stream()
-                .map(cacheNode -> findNodeByGuid(cacheNode, node.getGuid()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .findFirst();
+    private void disableDbNode(ExportedNode node, List<ExportConflict> conflicts) {
+        dbTreeStorage.findNode(node.guid).filter(dbTreeStorage::isEnabled).ifPresent(dbNode -> {
+            if (!dbTreeStorage.disable(dbNode, node.version)) {
+                conflicts.add(ExportConflict.changed(node.node, node.value, node.version, dbNode));
+            }
+        });
     }
 
-    private <T extends Node<T>> Optional<T> findNodeByGuid(T tree, UUID guid) {
-        return Optional.ofNullable(traverseTree(tree,
-                                                currentNode -> {
-                                                    if (Objects.equals(currentNode.getGuid(), guid)) {
-                                                        return currentNode;
-                                                    }
-                                                    return null;
-                                                }));
+    private void addNewDbNode(ExportedNode node, List<ExportConflict> conflicts) {
+        Optional<DbNode> added = createDbParentRecursively(node.parent)
+                .flatMap(parent -> dbTreeStorage.addChild(parent, node.guid, node.value));
+
+        if (!added.isPresent()) {
+            ExportedNode disabledAncestor = findDisabledDbAncestor(node).orElse(node.parent);
+            log.warn("Can't export: " + node.value + ", because ancestor in db: " + disabledAncestor.value + " is disabled");
+            conflicts.add(ExportConflict.parentRemoved(node.node, node.value, node.version, disabledAncestor.value));
+            return;
+        }
+
+        node.copied = true;
+        node.changed = false;
+        node.moved = false;
+        node.written = true;
     }
 
-    private <T extends Node<T>> T traverseTree(T tree, Function<T, T> action) {
-        T result = null;
-        List<T> visitedNodes = new ArrayList<>();
+    private void moveDbNode(ExportedNode node, List<ExportConflict> conflicts) {
+        Optional<DbNode> dbNode = dbTreeStorage.findNode(node.guid);
+        if (!dbNode.isPresent()) {
+            return;
+        }
+        if (!dbTreeStorage.isEnabled(dbNode.get())) {
+            conflicts.add(ExportConflict.removed(node.node, node.value, node.version, dbNode.get()));
+            return;
+        }
 
-        Deque<T> stack = new LinkedList<>();
-        while (tree != null || !stack.isEmpty()) {
+        Optional<DbNode> newParent = createDbParentRecursively(node.parent);
+        if (!newParent.isPresent() || !dbTreeStorage.move(dbNode.get(), newParent.get())) {
+            Optional<ExportedNode> disabledAncestor = findDisabledDbAncestor(node);
+            if (!dbTreeStorage.isEnabled(dbNode.get())) {
+                conflicts.add(ExportConflict.removed(node.node, node.value, node.version, dbNode.get()));
+            } else if (disabledAncestor.isPresent() || !newParent.isPresent()) {
+                String ancestor = disabledAncestor.orElse(node.parent).value;
+                log.warn("Can't move: " + node.value + ", because ancestor in db: " + ancestor + " is disabled");
+                conflicts.add(ExportConflict.parentRemoved(node.node, node.value, node.version, ancestor));
+            } else {
+                log.warn("Can't move: " + node.value + ", because " + newParent.get().getValue() + " is in its subtree in db");
+                conflicts.add(ExportConflict.cycle(node.node, node.value, node.version, newParent.get()));
+            }
+            return;
+        }
+        node.moved = false;
+        node.written = true;
+    }
+
+    private Optional<ExportedNode> findDisabledDbAncestor(ExportedNode node) {
+        ExportedNode parent = node.parent;
+
+        while (parent != null) {
+            DbNode dbNode = dbTreeStorage.findNode(parent.guid).orElse(null);
 
-            if (!stack.isEmpty()) {
-                tree = stack.pop();
+            if (dbNode == null) {
+                parent = parent.parent;
+                continue;
             }
 
-            while (tree != null) {
-                Optional<T> child = tree.findNotVisitedChild();
-                if (child.isPresent()) {
-                    stack.push(tree);
-                    tree = child.get();
-                    continue;
-                }
+            return dbTreeStorage.isEnabled(dbNode) ? Optional.empty() : Optional.of(parent);
+        }
 
-                result = action.apply(tree);
+        return Optional.empty();
+    }
 
-                if (result != null) {
-                    visitedNodes.forEach(node -> node.setVisited(false));
-                    return result;
-                }
+    private void changeValueForDbNode(ExportedNode node, List<ExportConflict> conflicts) {
+        Optional<DbNode> dbNode = dbTreeStorage.findNode(node.guid);
 
-                tree.setVisited(true);
-                visitedNodes.add(tree);
-                tree = null;
-            }
+        if (dbNode.isPresent() && !dbTreeStorage.isEnabled(dbNode.get())) {
+            conflicts.add(ExportConflict.removed(node.node, node.value, node.version, dbNode.get()));
+            return;
+        }
+        if (dbNode.isPresent() && !dbTreeStorage.changeValue(dbNode.get(), node.version, node.value)) {
+            conflicts.add(ExportConflict.changed(node.node, node.value, node.version, dbNode.get()));
+            return;
+        }
+
+        node.changed = false;
+        node.written = true;
+    }
+
+    private Optional<DbNode> createDbParentRecursively(ExportedNode treeParent) {
+        Optional<DbNode> newNodeParent = dbTreeStorage.findNode(treeParent.guid);
+
+        if (newNodeParent.isPresent()) {
+            return newNodeParent;
         }
 
+        Optional<DbNode> newNode = createDbParentRecursively(treeParent.parent)
+                .flatMap(parent -> dbTreeStorage.addChild(parent, treeParent.guid, treeParent.value));
+        newNode.ifPresent(created -> {
+            treeParent.copied = true;
+            treeParent.changed = false;
+            treeParent.written = true;
+        });
+        return newNode;
+    }
 
-        visitedNodes.forEach(node -> node.setVisited(false));
-        return result;
+    private Optional<DbNode> findDbNode(Node node) {
+        return dbTreeStorage.findNode(node.getGuid());
+    }
+
+    private Optional<CacheNode> findCacheNode(Node node) {
+        return cacheTreeStorage.findNode(node.getGuid());
+    }
+
+    private Optional<CacheNode> findOrReloadCacheNode(Node node) {
+        Optional<CacheNode> cacheNode = findCacheNode(node);
+        return cacheNode.isPresent() ? cacheNode : reloadCacheNode(node.getGuid());
+    }
+
+    private Optional<CacheNode> reloadCacheNode(UUID guid) {
+        Optional<DbNode> dbNode = dbTreeStorage.findNode(guid);
+        if (!dbNode.isPresent()) {
+            return Optional.empty();
+        }
+
+        log.info("Reload evicted node to cache: " + dbNode.get().getValue());
+        importNodeToChache(dbNode.get());
+        return cacheTreeStorage.findNode(guid);
+    }
+
+    private final class Export {
+
+        private final List<CacheNode> changes;
+        private final Map<CacheNode, ExportedNode> exported;
+        private final Collection<List<ExportedNode>> units;
+        private final List<ExportConflict> conflicts;
+        private final AtomicInteger done;
+        private final BiConsumer<Integer, Integer> progress;
+
+        private Export(List<CacheNode> changes, BiConsumer<Integer, Integer> progress) {
+            this.changes = changes;
+            this.exported = new LinkedHashMap<>();
+            this.units = new ArrayList<>();
+            partitionChanges(changes).forEach(unit -> {
+                List<ExportedNode> exportedUnit = new ArrayList<>(unit.size());
+                unit.forEach(node -> exportedUnit.add(exported(node)));
+                units.add(exportedUnit);
+            });
+            this.conflicts = Collections.synchronizedList(new ArrayList<>());
+            this.done = new AtomicInteger();
+            this.progress = progress;
+        }
+
+        private ExportedNode exported(CacheNode node) {
+            Deque<CacheNode> path = new ArrayDeque<>();
+            CacheNode current = node;
+            while (current != null && !exported.containsKey(current)) {
+                path.push(current);
+                current = current.getParent();
+            }
+
+            ExportedNode parent = current == null ? null : exported.get(current);
+            while (!path.isEmpty()) {
+                CacheNode next = path.pop();
+                parent = new ExportedNode(next, parent);
+                exported.put(next, parent);
+            }
+            return exported.get(node);
+        }
+    }
+
+    private static final class ExportedNode {
+
+        private final CacheNode node;
+        private final ExportedNode parent;
+        private final UUID guid;
+        private final UUID parentGuid;
+        private final String value;
+        private final long version;
+        private final boolean enable;
+        private boolean copied;
+        private boolean changed;
+        private boolean moved;
+        private boolean written;
+
+        private ExportedNode(CacheNode node, ExportedNode parent) {
+            this.node = node;
+            this.parent = parent;
+            this.guid = node.getGuid();
+            this.parentGuid = parent == null ? null : parent.guid;
+            this.value = node.getValue();
+            this.version = node.getVersion();
+            this.enable = node.isEnable();
+            this.copied = node.isCopied();
+            this.changed = node.isChanged();
+            this.moved = node.isMoved();
+        }
     }
 }
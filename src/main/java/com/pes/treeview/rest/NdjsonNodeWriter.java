@@ -0,0 +1,100 @@
+package com.pes.treeview.rest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.pes.treeview.core.domain.Node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+class NdjsonNodeWriter implements Closeable {
+
+    private static final JsonFactory JSON = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final int FLUSH_INTERVAL = 1024;
+
+    private final JsonGenerator generator;
+    private int pending;
+
+    NdjsonNodeWriter(OutputStream out) throws IOException {
+        this.generator = JSON.createGenerator(out, JsonEncoding.UTF8).setRootValueSeparator(null);
+    }
+
+    <T extends Node<T>> boolean write(Walk<T> walk, int limit) throws IOException {
+        for (int written = 0; written < limit; ) {
+            Frame<T> frame = walk.stack.peek();
+            if (frame == null) {
+                return false;
+            }
+            if (frame.next >= frame.nodes.size()) {
+                walk.stack.pop();
+                continue;
+            }
+
+            T node = frame.nodes.get(frame.next++);
+            write(node, frame.level);
+            written++;
+            if (walk.maxDepth < 0 || frame.level < walk.maxDepth) {
+                walk.stack.push(new Frame<>(node.getChilds(), frame.level + 1));
+            }
+        }
+        return !walk.stack.isEmpty();
+    }
+
+    private void write(Node<?> node, int level) throws IOException {
+        Node<?> parent = node.getParent();
+
+        generator.writeStartObject();
+        generator.writeStringField("guid", node.getGuid().toString());
+        if (parent != null) {
+            generator.writeStringField("parent", parent.getGuid().toString());
+        } else {
+            generator.writeNullField("parent");
+        }
+        generator.writeStringField("value", node.getValue());
+        generator.writeBooleanField("enabled", node.isEnable());
+        generator.writeNumberField("level", level);
+        generator.writeNumberField("childCount", node.getChildCount());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+
+        if (++pending == FLUSH_INTERVAL) {
+            generator.flush();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    static final class Walk<T extends Node<T>> {
+
+        private final Deque<Frame<T>> stack = new ArrayDeque<>();
+        private final int maxDepth;
+
+        Walk(Collection<T> roots, int maxDepth) {
+            this.maxDepth = maxDepth;
+            stack.push(new Frame<>(roots, 0));
+        }
+    }
+
+    private static final class Frame<T> {
+
+        private final List<T> nodes;
+        private final int level;
+        private int next;
+
+        private Frame(Collection<T> nodes, int level) {
+            this.nodes = nodes instanceof List ? (List<T>) nodes : new ArrayList<>(nodes);
+            this.level = level;
+        }
+    }
+}
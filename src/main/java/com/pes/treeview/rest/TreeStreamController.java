@@ -0,0 +1,226 @@
+package com.pes.treeview.rest;
+
+import com.pes.treeview.core.domain.CacheNode;
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.Node;
+import com.pes.treeview.core.persistent.CacheTreeStorage;
+import com.pes.treeview.core.persistent.CacheWorkspaces;
+import com.pes.treeview.core.persistent.DBTreeStorage;
+import com.vaadin.flow.server.VaadinSession;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class TreeStreamController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String NEXT_CURSOR = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 10000;
+    private static final int CHUNK_SIZE = 1024;
+
+    private final DBTreeStorage dbTreeStorage;
+    private final CacheWorkspaces cacheWorkspaces;
+
+    @GetMapping("/db/subtree")
+    public ResponseEntity<StreamingResponseBody> dbSubtree(
+            @RequestParam(required = false) UUID root,
+            @RequestParam(defaultValue = "-1") int depth
+    ) {
+        Optional<DbNode> found = root == null ? Optional.of(dbTreeStorage.getTree()) : dbTreeStorage.findNode(root);
+        return found.map(node -> subtree(singletonList(node), depth, Runnable::run))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/db/childs")
+    public ResponseEntity<StreamingResponseBody> dbChilds(
+            @RequestParam UUID parent,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        return dbTreeStorage.findNode(parent)
+                .map(node -> page(node::getChilds, after, limit, Runnable::run))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/cache")
+    public Set<UUID> cacheWorkspaces(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session == null ? emptySet() : cacheWorkspaces.getWorkspaces(session.getId());
+    }
+
+    @GetMapping("/cache/{workspace}/subtree")
+    public ResponseEntity<StreamingResponseBody> cacheSubtree(
+            HttpServletRequest request,
+            @PathVariable UUID workspace,
+            @RequestParam(required = false) UUID root,
+            @RequestParam(defaultValue = "-1") int depth
+    ) {
+        return withCache(request, workspace, (storage, locked) -> {
+            if (root == null) {
+                return subtree(new ArrayList<>(storage.getCache()), depth, locked);
+            }
+            return storage.findNode(root)
+                    .map(node -> subtree(singletonList(node), depth, locked))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        });
+    }
+
+    @GetMapping("/cache/{workspace}/childs")
+    public ResponseEntity<StreamingResponseBody> cacheChilds(
+            HttpServletRequest request,
+            @PathVariable UUID workspace,
+            @RequestParam(required = false) UUID parent,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        return withCache(request, workspace, (storage, locked) -> {
+            if (parent == null) {
+                List<CacheNode> roots = new ArrayList<>(storage.getCache());
+                return page((offset, count) -> roots.subList(
+                        Math.min(offset, roots.size()),
+                        (int) Math.min((long) offset + count, roots.size())
+                ), after, limit, locked);
+            }
+            return storage.findNode(parent)
+                    .map(node -> page(node::getChilds, after, limit, locked))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> withCache(
+            HttpServletRequest request,
+            UUID workspace,
+            BiFunction<CacheTreeStorage, Executor, ResponseEntity<StreamingResponseBody>> read
+    ) {
+        HttpSession session = request.getSession(false);
+        Optional<CacheTreeStorage> storage = session == null
+                ? Optional.empty()
+                : cacheWorkspaces.find(workspace, session.getId());
+        if (!storage.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The cache belongs to the UI thread: resolve the request and render each chunk under the session lock.
+        VaadinSession owner = storage.get().getSession();
+        Executor locked = chunk -> owner.accessSynchronously(chunk::run);
+        AtomicReference<ResponseEntity<StreamingResponseBody>> response = new AtomicReference<>();
+        locked.execute(() -> response.set(read.apply(storage.get(), locked)));
+        return response.get();
+    }
+
+    private <T extends Node<T>> ResponseEntity<StreamingResponseBody> subtree(Collection<T> roots, int depth, Executor reader) {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(stream(roots, depth, reader));
+    }
+
+    private <T extends Node<T>> StreamingResponseBody stream(Collection<T> roots, int depth, Executor reader) {
+        return out -> {
+            NdjsonNodeWriter.Walk<T> walk = new NdjsonNodeWriter.Walk<>(roots, depth);
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            boolean[] more = new boolean[]{true};
+            while (more[0]) {
+                chunk.reset();
+                reader.execute(() -> {
+                    try (NdjsonNodeWriter writer = new NdjsonNodeWriter(chunk)) {
+                        more[0] = writer.write(walk, CHUNK_SIZE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                chunk.writeTo(out);
+            }
+        };
+    }
+
+    private <T extends Node<T>> ResponseEntity<StreamingResponseBody> page(
+            BiFunction<Integer, Integer, List<T>> childs,
+            String after,
+            int limit,
+            Executor reader
+    ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int offset = 0;
+        if (after != null) {
+            Cursor cursor = Cursor.parse(after);
+            if (cursor == null) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            List<T> last = childs.apply(cursor.offset - 1, 1);
+            if (last.isEmpty() || !last.get(0).getGuid().equals(cursor.guid)) {
+                return ResponseEntity.notFound().build();
+            }
+            offset = cursor.offset;
+        }
+
+        List<T> page = new ArrayList<>(childs.apply(offset, limit + 1));
+        boolean more = page.size() > limit;
+        if (more) {
+            page.remove(limit);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(NDJSON);
+        if (more) {
+            T last = page.get(page.size() - 1);
+            response.header(NEXT_CURSOR, new Cursor(offset + page.size(), last.getGuid()).toString());
+        }
+        return response.body(stream(page, 0, reader));
+    }
+
+    private static class Cursor {
+
+        private final int offset;
+        private final UUID guid;
+
+        Cursor(int offset, UUID guid) {
+            this.offset = offset;
+            this.guid = guid;
+        }
+
+        static Cursor parse(String value) {
+            int separator = value.indexOf(':');
+            try {
+                int offset = Integer.parseInt(value.substring(0, Math.max(separator, 0)));
+                return offset < 1 ? null : new Cursor(offset, UUID.fromString(value.substring(separator + 1)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return offset + ":" + guid;
+        }
+    }
+}
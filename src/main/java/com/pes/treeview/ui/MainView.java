@@ -1,29 +1,53 @@
 package com.pes.treeview.ui;
 
+import com.pes.treeview.core.domain.ExportConflict;
+import com.pes.treeview.core.domain.ExportReport;
 import com.pes.treeview.core.domain.Node;
+import com.pes.treeview.core.domain.SearchHit;
+import com.pes.treeview.core.event.NodeEvent;
+import com.pes.treeview.core.event.NodeEvents;
 import com.pes.treeview.core.service.TreeViewFacade;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.grid.editor.Editor;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.page.Push;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.treegrid.TreeGrid;
+import com.vaadin.flow.data.provider.hierarchy.HierarchicalDataProvider;
 import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.spring.annotation.UIScope;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+import static com.vaadin.flow.component.grid.Grid.SelectionMode.MULTI;
 import static com.vaadin.flow.component.grid.Grid.SelectionMode.SINGLE;
 
 
+@Push
 @Route
 @UIScope
 @Component
 public class MainView extends VerticalLayout {
 
+    private static final int SEARCH_LIMIT = 100;
+    private static final int EVENT_BATCH_LIMIT = 256;
+
     private TreeGrid<Node> cachedTreeGrid;
     private TreeGrid<Node> dbTreeGrid;
     private Button saveBtn;
@@ -31,34 +55,131 @@ public class MainView extends VerticalLayout {
     private Button editBtn;
     private Button addBtn;
     private Button removeBtn;
+    private Button moveBtn;
     private Button resetBtn;
     private Button importBtn;
+    private Button importSubtreeBtn;
     private Button exportBtn;
+    private Button undoExportBtn;
+    private ProgressBar exportProgress;
     private TextField editableField;
+    private TextField searchField;
+    private Button findBtn;
 
     private TreeViewFacade treeViewFacade;
+    private NodeEvents.Subscription cacheSubscription;
+    private NodeEvents.Subscription dbSubscription;
+    private final List<NodeEvent> dbEvents = new ArrayList<>();
+    private boolean dbEventsOverflowed;
+    private boolean dbEventsScheduled;
+    private volatile boolean exporting;
+    private Node movingNode;
 
     @Autowired
     public MainView(TreeViewFacade treeViewFacade) {
         this.treeViewFacade = treeViewFacade;
         editableField = new TextField();
-        dbTreeGrid = createTreeGrid(treeViewFacade.getDbTree());
+        dbTreeGrid = createTreeGrid(treeViewFacade::getDbTree, MULTI);
 
         HorizontalLayout baseLayout = new HorizontalLayout();
         baseLayout.add(createCacheTreeBlock());
         baseLayout.add(createImportBtnBlock());
         baseLayout.add(createDbTreeBlock());
+        add(createSearchBlock());
         add(baseLayout);
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        cacheSubscription = treeViewFacade.subscribeCache(event -> applyEvent(cachedTreeGrid, event));
+        dbSubscription = treeViewFacade.subscribeDb(event -> {
+            if (UI.getCurrent() == ui && !exporting) {
+                applyEvent(dbTreeGrid, event);
+            } else {
+                bufferDbEvent(ui, event);
+            }
+        });
+    }
+
+    private void bufferDbEvent(UI ui, NodeEvent event) {
+        boolean schedule;
+        synchronized (dbEvents) {
+            if (dbEvents.size() < EVENT_BATCH_LIMIT) {
+                dbEvents.add(event);
+            } else {
+                dbEventsOverflowed = true;
+            }
+            schedule = !exporting && !dbEventsScheduled;
+            dbEventsScheduled |= schedule;
+        }
+        if (schedule) {
+            ui.access(() -> {
+                applyDbEvents();
+                if (!exporting) {
+                    treeViewFacade.syncCacheWithDb();
+                    refreshUndoExport();
+                }
+            });
+        }
+    }
+
+    private void applyDbEvents() {
+        List<NodeEvent> buffered;
+        boolean overflowed;
+        synchronized (dbEvents) {
+            buffered = new ArrayList<>(dbEvents);
+            overflowed = dbEventsOverflowed;
+            dbEvents.clear();
+            dbEventsOverflowed = false;
+            dbEventsScheduled = false;
+        }
+
+        if (overflowed || buffered.stream().anyMatch(event -> event.getType() == NodeEvent.Type.RESET)) {
+            applyEvent(dbTreeGrid, NodeEvent.reset());
+        } else {
+            buffered.forEach(event -> applyEvent(dbTreeGrid, event));
+        }
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        cacheSubscription.remove();
+        dbSubscription.remove();
+    }
+
+    private HorizontalLayout createSearchBlock() {
+        HorizontalLayout baseLayout = new HorizontalLayout();
+        searchField = new TextField();
+        searchField.setPlaceholder("Search by value");
+        findBtn = new Button("Find");
+        findBtn.addClickListener(event -> {
+            String query = searchField.getValue();
+            reveal(cachedTreeGrid, treeViewFacade.searchCache(query, SEARCH_LIMIT));
+            reveal(dbTreeGrid, treeViewFacade.searchDb(query, SEARCH_LIMIT));
+        });
+
+        baseLayout.add(searchField);
+        baseLayout.add(findBtn);
+        return baseLayout;
+    }
+
+    private void reveal(TreeGrid<Node> grid, List<SearchHit> hits) {
+        grid.deselectAll();
+        hits.forEach(hit -> grid.expand(hit.getPath().subList(0, hit.getPath().size() - 1)));
+        if (!hits.isEmpty()) {
+            grid.select(hits.get(0).getNode());
+        }
+    }
+
     private VerticalLayout createCacheTreeBlock() {
         VerticalLayout baseLayout = new VerticalLayout();
-        cachedTreeGrid = createTreeGrid(treeViewFacade.getCacheTree());
-        Binder<Node> binder = new Binder<>(Node.class);
+        cachedTreeGrid = createTreeGrid(treeViewFacade::getCacheTree, SINGLE);
+        Binder<Node> binder = new Binder<>();
         Editor<Node> editor = cachedTreeGrid.getEditor();
         editor.setBinder(binder);
         editor.setBuffered(true);
-        binder.forField(editableField).bind("value");
+        binder.forField(editableField).bind(Node::getValue, treeViewFacade::changeValueInCache);
         cachedTreeGrid.getColumns().get(0).setEditorComponent(editableField);
         baseLayout.add(cachedTreeGrid);
         baseLayout.add(createCacheBtnsBlock());
@@ -69,26 +190,160 @@ public class MainView extends VerticalLayout {
     private VerticalLayout createImportBtnBlock() {
         VerticalLayout baseLayout = new VerticalLayout();
         importBtn = new Button("Import");
+        importSubtreeBtn = new Button("Import subtree");
         exportBtn = new Button("Export");
+        undoExportBtn = new Button("Undo export");
+        exportProgress = new ProgressBar(0, 1);
+        exportProgress.setVisible(false);
 
         importBtn.addClickListener(event -> {
-            if (!dbTreeGrid.getSelectedItems().isEmpty()) {
+            if (dbTreeGrid.getSelectedItems().size() == 1) {
                 treeViewFacade.importToChache(dbTreeGrid.getSelectedItems().iterator().next());
-                refreshCacheTreeGrid();
+            } else if (!dbTreeGrid.getSelectedItems().isEmpty()) {
+                treeViewFacade.importToChache(dbTreeGrid.getSelectedItems());
             }
         });
+        importSubtreeBtn.addClickListener(event -> dbTreeGrid.getSelectedItems().forEach(treeViewFacade::importSubtreeToChache));
         exportBtn.addClickListener(event -> {
-            treeViewFacade.exportCacheToDb();
-            refreshDbTreeGrid();
-            refreshCacheTreeGrid();
+            if (treeViewFacade.isExportAsync()) {
+                exportAsync();
+                return;
+            }
+
+            synchronized (dbEvents) {
+                exporting = true;
+            }
+            ExportReport report = null;
+            try {
+                report = treeViewFacade.exportCacheToDb();
+            } finally {
+                finishExport(report);
+            }
         });
+        undoExportBtn.addClickListener(event -> {
+            if (!treeViewFacade.undoExport()) {
+                Notification.show("Can't undo: the latest db version was not exported from this view");
+            }
+            refreshUndoExport();
+        });
+        refreshUndoExport();
 
         baseLayout.add(importBtn);
+        baseLayout.add(importSubtreeBtn);
         baseLayout.add(exportBtn);
+        baseLayout.add(undoExportBtn);
+        baseLayout.add(exportProgress);
 
         return baseLayout;
     }
 
+    private void exportAsync() {
+        UI ui = UI.getCurrent();
+        AtomicInteger shownPercent = new AtomicInteger();
+        synchronized (dbEvents) {
+            exporting = true;
+        }
+        setExportRunning(true);
+
+        try {
+            treeViewFacade.exportCacheToDbAsync((done, total) -> {
+                int percent = done * 100 / total;
+                if (shownPercent.getAndSet(percent) != percent) {
+                    ui.access(() -> exportProgress.setValue(percent / 100.0));
+                }
+            }, command -> ui.access(command::run)).whenComplete((report, error) -> {
+                if (error != null) {
+                    Notification.show("Export failed: " + error.getMessage());
+                }
+                setExportRunning(false);
+                finishExport(report);
+            });
+        } catch (RejectedExecutionException e) {
+            Notification.show("Too many exports in progress, try again later");
+            setExportRunning(false);
+            finishExport(null);
+        }
+    }
+
+    private void finishExport(ExportReport report) {
+        synchronized (dbEvents) {
+            exporting = false;
+        }
+        applyDbEvents();
+        refreshUndoExport();
+        if (report != null && report.hasConflicts()) {
+            showConflicts(report.getConflicts());
+        }
+    }
+
+    private void refreshUndoExport() {
+        undoExportBtn.setEnabled(!exporting && treeViewFacade.canUndoExport());
+    }
+
+    private void setExportRunning(boolean running) {
+        boolean editing = cachedTreeGrid.getEditor().isOpen();
+        exportProgress.setValue(0);
+        exportProgress.setVisible(running);
+        importBtn.setEnabled(!running);
+        importSubtreeBtn.setEnabled(!running);
+        exportBtn.setEnabled(!running);
+        undoExportBtn.setEnabled(!running && treeViewFacade.canUndoExport());
+        editBtn.setEnabled(!running && !editing);
+        saveBtn.setEnabled(!running && editing);
+        cancelBtn.setEnabled(!running && editing);
+        editableField.setReadOnly(running);
+        addBtn.setEnabled(!running);
+        removeBtn.setEnabled(!running);
+        moveBtn.setEnabled(!running);
+        resetBtn.setEnabled(!running);
+    }
+
+    private void showConflicts(List<ExportConflict> conflicts) {
+        Dialog dialog = new Dialog();
+        VerticalLayout rows = new VerticalLayout();
+        rows.add(new Span(conflicts.size() + " nodes were changed in db since import"));
+
+        conflicts.forEach(conflict -> {
+            HorizontalLayout row = new HorizontalLayout();
+            row.add(new Span(conflictDescription(conflict)));
+            if (conflict.getType() == ExportConflict.Type.CHANGED) {
+                Button keepCacheBtn = new Button("Keep cache");
+                keepCacheBtn.addClickListener(e -> {
+                    treeViewFacade.resolveConflict(conflict, true);
+                    row.setVisible(false);
+                });
+                row.add(keepCacheBtn);
+            }
+            Button keepDbBtn = new Button("Keep db");
+            keepDbBtn.addClickListener(e -> {
+                treeViewFacade.resolveConflict(conflict, false);
+                row.setVisible(false);
+            });
+            row.add(keepDbBtn);
+            rows.add(row);
+        });
+
+        Button closeBtn = new Button("Close");
+        closeBtn.addClickListener(e -> dialog.close());
+        rows.add(closeBtn);
+        dialog.add(rows);
+        dialog.open();
+    }
+
+    private String conflictDescription(ExportConflict conflict) {
+        switch (conflict.getType()) {
+            case REMOVED:
+                return conflict.getCacheValue() + ": removed in db";
+            case PARENT_REMOVED:
+                return conflict.getCacheValue() + ": ancestor " + conflict.getRemovedAncestor().orElse("") + " removed in db";
+            case CYCLE:
+                return conflict.getCacheValue() + ": can't move under " + conflict.getNewParent().orElse("") + ", it is in its subtree in db";
+            default:
+                return conflict.getCacheValue() + ": db has " + conflict.getDbValue().orElse("")
+                        + " (version " + conflict.getActualVersion().orElse(-1) + ", imported " + conflict.getExpectedVersion() + ")";
+        }
+    }
+
     private VerticalLayout createDbTreeBlock() {
         return new VerticalLayout(dbTreeGrid);
     }
@@ -145,7 +400,7 @@ public class MainView extends VerticalLayout {
                 Node node = cachedTreeGrid.getSelectedItems().iterator().next();
                 if (node.isEnable()) {
                     treeViewFacade.addNewToCache(node, "New node");
-                    refreshCacheTreeGrid();
+                    cachedTreeGrid.expand(node);
                 }
             }
         });
@@ -157,35 +412,52 @@ public class MainView extends VerticalLayout {
                 Node node = cachedTreeGrid.getSelectedItems().iterator().next();
                 if (node.isEnable()) {
                     treeViewFacade.disableInCache(node);
-                    refreshCacheTreeGrid();
                 }
             }
         });
         baseLayout.add(removeBtn);
 
+        moveBtn = new Button("Move");
+        moveBtn.addClickListener(e -> {
+            if (cachedTreeGrid.getSelectedItems().isEmpty()) {
+                return;
+            }
+            Node node = cachedTreeGrid.getSelectedItems().iterator().next();
+            if (movingNode == null) {
+                if (node.isEnable()) {
+                    movingNode = node;
+                    moveBtn.setText("Move here");
+                }
+                return;
+            }
+
+            if (treeViewFacade.moveInCache(movingNode, node)) {
+                cachedTreeGrid.expand(node);
+            } else {
+                Notification.show("Can't move " + movingNode.getValue() + " to " + node.getValue());
+            }
+            movingNode = null;
+            moveBtn.setText("Move");
+        });
+        baseLayout.add(moveBtn);
+
         resetBtn = new Button("Reset");
         resetBtn.addClickListener(e -> {
             treeViewFacade.reset();
-            refreshCacheTreeGrid();
-            refreshDbTreeGrid();
+            refreshUndoExport();
         });
         baseLayout.add(resetBtn);
 
         return baseLayout;
     }
 
-    private TreeGrid<Node> createTreeGrid(List<Node> nodes) {
+    private TreeGrid<Node> createTreeGrid(Supplier<List<Node>> rootsSupplier, Grid.SelectionMode selectionMode) {
         TreeGrid<Node> grid = new TreeGrid<>();
         grid.setWidth("45em");
-
-        grid.setItems(
-                nodes,
-                Node::getChilds
-        );
-
+        grid.setDataProvider(new NodeDataProvider(rootsSupplier));
         grid.addHierarchyColumn(node -> displayedValue(node.getValue(), node.isEnable()));
-        grid.setSelectionMode(SINGLE);
-        grid.expandRecursively(nodes, 10);
+        grid.setSelectionMode(selectionMode);
+        grid.expand(rootsSupplier.get());
         return grid;
     }
 
@@ -197,15 +469,39 @@ public class MainView extends VerticalLayout {
         return value;
     }
 
-    private void refreshCacheTreeGrid() {
-        cachedTreeGrid.setItems(treeViewFacade.getCacheTree(), Node::getChilds);
-        cachedTreeGrid.getDataProvider().refreshAll();
-        cachedTreeGrid.expandRecursively(treeViewFacade.getCacheTree(), 10);
-    }
+    private void applyEvent(TreeGrid<Node> grid, NodeEvent event) {
+        HierarchicalDataProvider<Node, Object> dataProvider = grid.getDataProvider();
+        Node node = event.getNode();
 
-    private void refreshDbTreeGrid() {
-        dbTreeGrid.setItems(treeViewFacade.getDbTree(), Node::getChilds);
-        dbTreeGrid.expandRecursively(treeViewFacade.getDbTree(), 10);
-        dbTreeGrid.getDataProvider().refreshAll();
+        switch (event.getType()) {
+            case ADDED:
+                if (node.getParent() == null) {
+                    dataProvider.refreshAll();
+                } else {
+                    dataProvider.refreshItem(node.getParent(), true);
+                }
+                break;
+            case VALUE_CHANGED:
+                dataProvider.refreshItem(node);
+                break;
+            case DISABLED:
+                dataProvider.refreshItem(node, true);
+                break;
+            case REPARENTED:
+                if (event.getPreviousParent() == null || node.getParent() == null) {
+                    dataProvider.refreshAll();
+                } else {
+                    dataProvider.refreshItem(event.getPreviousParent(), true);
+                    dataProvider.refreshItem(node.getParent(), true);
+                }
+                break;
+            case RELOADED:
+            case RESET:
+                dataProvider.refreshAll();
+                if (grid == dbTreeGrid) {
+                    grid.expand(treeViewFacade.getDbTree());
+                }
+                break;
+        }
     }
 }
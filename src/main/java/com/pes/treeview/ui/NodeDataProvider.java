@@ -0,0 +1,45 @@
+package com.pes.treeview.ui;
+
+import com.pes.treeview.core.domain.Node;
+import com.vaadin.flow.data.provider.hierarchy.AbstractBackEndHierarchicalDataProvider;
+import com.vaadin.flow.data.provider.hierarchy.HierarchicalQuery;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class NodeDataProvider extends AbstractBackEndHierarchicalDataProvider<Node, Void> {
+
+    private final Supplier<List<Node>> rootsSupplier;
+
+    @Override
+    public int getChildCount(HierarchicalQuery<Node, Void> query) {
+        Node parent = query.getParent();
+        return parent == null ? rootsSupplier.get().size() : parent.getChildCount();
+    }
+
+    @Override
+    public boolean hasChildren(Node item) {
+        return item.getChildCount() > 0;
+    }
+
+    @Override
+    public Object getId(Node item) {
+        return item.getGuid();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Stream<Node> fetchChildrenFromBackEnd(HierarchicalQuery<Node, Void> query) {
+        Node parent = query.getParent();
+        if (parent != null) {
+            return ((List<Node>) parent.getChilds(query.getOffset(), query.getLimit())).stream();
+        }
+
+        return rootsSupplier.get().stream()
+                .skip(query.getOffset())
+                .limit(query.getLimit());
+    }
+}
@@ -0,0 +1,111 @@
+package com.pes.treeview.core.domain;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Nodes.newDbRoot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChildListTest {
+
+    private ObjectDbNode root;
+    private ChildList<DbNode> childs;
+
+    @Before
+    public void setUp() {
+        root = newDbRoot("root", UUID.randomUUID());
+        childs = new ChildList<>();
+    }
+
+    @Test
+    public void findsGuidsBelowAndAboveIndexThreshold() {
+        for (int count : new int[]{1, 32, 33, 200}) {
+            childs = new ChildList<>();
+            List<DbNode> nodes = nodes(count);
+            childs.appendAll(nodes);
+
+            assertEquals(count, childs.size());
+            for (DbNode node : nodes) {
+                assertTrue("size " + count, childs.containsGuid(node.getGuid()));
+            }
+            assertFalse("size " + count, childs.containsGuid(UUID.randomUUID()));
+        }
+    }
+
+    @Test
+    public void rejectsDuplicateGuid() {
+        List<DbNode> nodes = nodes(40);
+        childs.appendAll(nodes);
+
+        assertFalse(childs.append(nodes.get(0)));
+        assertFalse(childs.append(newDbNodeFromExisted("copy", root, nodes.get(39).getGuid())));
+        assertEquals(40, childs.size());
+    }
+
+    @Test
+    public void keepsIndexInStepWithDeletes() {
+        List<DbNode> nodes = nodes(64);
+        childs.appendAll(nodes);
+
+        for (int i = 0; i < 64; i += 2) {
+            assertTrue(childs.delete(nodes.get(i)));
+        }
+
+        assertEquals(32, childs.size());
+        for (int i = 0; i < 64; i++) {
+            assertEquals("child " + i, i % 2 == 1, childs.containsGuid(nodes.get(i).getGuid()));
+        }
+        assertTrue(childs.append(nodes.get(0)));
+        assertTrue(childs.containsGuid(nodes.get(0).getGuid()));
+        assertEquals(nodes.get(0), childs.get(32));
+        assertFalse(childs.delete(nodes.get(2)));
+    }
+
+    @Test
+    public void keepsOrderAcrossDeletes() {
+        List<DbNode> nodes = nodes(5);
+        childs.appendAll(nodes);
+
+        childs.delete(nodes.get(1));
+        childs.delete(nodes.get(4));
+
+        List<DbNode> expected = new ArrayList<>(nodes);
+        expected.remove(4);
+        expected.remove(1);
+        assertEquals(expected, childs);
+    }
+
+    @Test
+    public void clampsPages() {
+        List<DbNode> nodes = nodes(10);
+        childs.appendAll(nodes);
+
+        assertEquals(nodes.subList(2, 5), childs.page(2, 3));
+        assertEquals(nodes.subList(8, 10), childs.page(8, 5));
+        assertEquals(nodes.subList(0, 2), childs.page(-3, 2));
+        assertTrue(childs.page(12, 5).isEmpty());
+        assertTrue(childs.page(3, -1).isEmpty());
+        assertEquals(nodes.subList(9, 10), childs.page(9, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsPositionPastSize() {
+        childs.appendAll(nodes(3));
+        childs.get(3);
+    }
+
+    private List<DbNode> nodes(int count) {
+        List<DbNode> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(newDbNodeFromExisted("Node " + i, root, UUID.randomUUID()));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,101 @@
+package com.pes.treeview.core.domain;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static com.pes.treeview.core.domain.Nodes.moveCacheNode;
+import static com.pes.treeview.core.domain.Nodes.moveDbNode;
+import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Nodes.newDbRoot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TombstoneTest {
+
+    private ObjectDbNode root;
+
+    @Before
+    public void setUp() {
+        root = newDbRoot("root", UUID.randomUUID());
+    }
+
+    @Test
+    public void disablingAncestorDisablesResolvedDescendants() {
+        ObjectDbNode parent = child(root, "parent");
+        ObjectDbNode middle = child(parent, "middle");
+        ObjectDbNode leaf = child(middle, "leaf");
+        assertTrue(leaf.isEnable());
+
+        parent.setEnable(false);
+
+        assertFalse(parent.isEnable());
+        assertFalse(middle.isEnable());
+        assertFalse(leaf.isEnable());
+        assertTrue(root.isEnable());
+    }
+
+    @Test
+    public void movingOutOfDisabledSubtreeEnablesNode() {
+        ObjectDbNode removed = child(root, "removed");
+        ObjectDbNode kept = child(root, "kept");
+        ObjectDbNode node = child(removed, "node");
+        removed.setEnable(false);
+        assertFalse(node.isEnable());
+
+        moveDbNode(node, kept);
+        assertTrue(node.isEnable());
+
+        moveDbNode(node, removed);
+        assertFalse(node.isEnable());
+    }
+
+    @Test
+    public void disablingTwiceBumpsVersionOnce() {
+        ObjectDbNode node = child(root, "node");
+        long version = node.getVersion();
+
+        node.setEnable(false);
+        node.setEnable(false);
+
+        assertEquals(version + 1, node.getVersion());
+    }
+
+    @Test
+    public void resolvesDeepChains() {
+        ObjectDbNode top = child(root, "top");
+        ObjectDbNode node = top;
+        for (int i = 0; i < 100000; i++) {
+            node = child(node, "node " + i);
+        }
+        assertTrue(node.isEnable());
+
+        top.setEnable(false);
+
+        assertFalse(node.isEnable());
+    }
+
+    @Test
+    public void cacheNodesShareEpochOfTheirWorkspace() {
+        TombstoneEpoch epoch = new TombstoneEpoch();
+        CacheNode parent = new CacheNode("parent", null, UUID.randomUUID(), changed -> { }, epoch);
+        CacheNode node = new CacheNode("node", parent, UUID.randomUUID(), changed -> { }, epoch);
+        parent.addChild(node);
+        CacheNode other = new CacheNode("other", null, UUID.randomUUID(), changed -> { }, epoch);
+        assertTrue(node.isEnable());
+
+        parent.refresh("parent", false);
+        assertFalse(node.isEnable());
+
+        moveCacheNode(node, other);
+        assertTrue(node.isEnable());
+    }
+
+    private static ObjectDbNode child(ObjectDbNode parent, String value) {
+        ObjectDbNode node = newDbNodeFromExisted(value, parent, UUID.randomUUID());
+        parent.addChild(node);
+        return node;
+    }
+}
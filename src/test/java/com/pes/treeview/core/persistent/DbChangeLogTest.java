@@ -0,0 +1,149 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.ObjectDbNode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.pes.treeview.core.domain.Nodes.newDbNodeFromExisted;
+import static com.pes.treeview.core.domain.Nodes.newDbRoot;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DbChangeLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    private ObjectDbNode root;
+    private ObjectDbNode child;
+
+    @Before
+    public void setUp() {
+        path = folder.getRoot().toPath().resolve("db.log");
+        root = newDbRoot("root", UUID.randomUUID());
+        child = newDbNodeFromExisted("child", root, UUID.randomUUID());
+        root.addChild(child);
+    }
+
+    @Test
+    public void replaysCommittedRecords() throws IOException {
+        DbChangeLog log = open();
+        log.rewrite(root);
+        ObjectDbNode added = newDbNodeFromExisted("added", child, UUID.randomUUID());
+        child.addChild(added);
+        log.appendAdd(added);
+        child.setValue("changed");
+        log.appendValue(child);
+        log.commit();
+        log.close();
+
+        DbNode replayed = open().replay();
+
+        assertEquals(root.getGuid(), replayed.getGuid());
+        DbNode replayedChild = single(replayed);
+        assertEquals("changed", replayedChild.getValue());
+        assertEquals(added.getGuid(), single(replayedChild).getGuid());
+    }
+
+    @Test
+    public void dropsUncommittedRecords() throws IOException {
+        DbChangeLog log = open();
+        log.rewrite(root);
+        child.setValue("pending");
+        log.appendValue(child);
+        log.discard();
+        log.close();
+
+        assertEquals("child", single(open().replay()).getValue());
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException {
+        DbChangeLog log = open();
+        log.rewrite(root);
+        log.close();
+        long committed = Files.size(path);
+
+        Files.write(path, ByteBuffer.allocate(6).putInt(64).array(), APPEND);
+        DbNode replayed = open().replay();
+
+        assertEquals("child", single(replayed).getValue());
+        assertEquals(committed, Files.size(path));
+    }
+
+    @Test
+    public void stopsAtRecordWithBadChecksum() throws IOException {
+        DbChangeLog log = open();
+        log.rewrite(root);
+        long beforeChange = Files.size(path);
+        child.setValue("corrupted");
+        log.appendValue(child);
+        log.commit();
+        log.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            byte last = file.readByte();
+            file.seek(file.length() - 1);
+            file.writeByte(last ^ 1);
+        }
+        DbNode replayed = open().replay();
+
+        assertEquals("child", single(replayed).getValue());
+        assertEquals(beforeChange, Files.size(path));
+    }
+
+    @Test
+    public void replaysValuesOverModifiedUtf8Limit() throws IOException {
+        String value = String.join("", Collections.nCopies(40000, "\u00e9"));
+        DbChangeLog log = open();
+        log.rewrite(root);
+        child.setValue(value);
+        log.appendValue(child);
+        log.commit();
+        log.close();
+
+        assertEquals(value, single(open().replay()).getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsValuesOverRecordLimit() {
+        byte[] bytes = new byte[CompactDbTree.MAX_VALUE_SIZE + 1];
+        Arrays.fill(bytes, (byte) 'a');
+        DbChangeLog.checkValue(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void replaysNothingWhenDisabled() {
+        DbChangeLog log = new DbChangeLog(false, path.toString());
+        log.rewrite(root);
+
+        assertNull(log.replay());
+    }
+
+    private DbChangeLog open() {
+        return new DbChangeLog(true, path.toString());
+    }
+
+    private static DbNode single(DbNode node) {
+        assertNotNull(node);
+        assertEquals(1, node.getChildCount());
+        return node.getChilds().iterator().next();
+    }
+}
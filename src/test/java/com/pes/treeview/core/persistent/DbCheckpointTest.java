@@ -0,0 +1,167 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.metrics.TreeMetrics;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DbCheckpointTest {
+
+    private static final String[] BACKENDS = {"object", "compact", "persistent"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir;
+    private List<DbChangeLog> logs;
+
+    @Before
+    public void setUp() {
+        dir = folder.getRoot().toPath();
+        logs = new ArrayList<>();
+    }
+
+    @Test
+    public void restoresSnapshotAndLogTail() throws IOException {
+        for (String backend : BACKENDS) {
+            DBTreeStorage db = open(backend);
+            DbNode root = db.getTree();
+            UUID before = UUID.randomUUID();
+            db.addChild(root, before, "before");
+            db.commit();
+            db.checkpoint();
+
+            UUID after = UUID.randomUUID();
+            db.addChild(root, after, "after");
+            DbNode changed = db.findNode(before).get();
+            assertTrue(db.changeValue(changed, changed.getVersion(), "before changed"));
+            db.commit();
+            closeLogs();
+
+            DBTreeStorage restored = open(backend);
+            assertEquals(backend, db.size(), restored.size());
+            assertEquals(backend, "before changed", restored.findNode(before).get().getValue());
+            assertEquals(backend, "after", restored.findNode(after).get().getValue());
+            assertEquals(backend, 1, restored.search("after", 10).size());
+            clean();
+        }
+    }
+
+    @Test
+    public void truncatesLogToCheckpoint() throws IOException {
+        for (String backend : BACKENDS) {
+            DBTreeStorage db = open(backend);
+            for (int i = 0; i < 100; i++) {
+                db.addChild(db.getTree(), UUID.randomUUID(), "node " + i);
+            }
+            db.commit();
+            long logged = Files.size(logPath());
+
+            db.checkpoint();
+
+            assertTrue(backend, Files.exists(snapshotPath()));
+            assertTrue(backend, Files.size(logPath()) < logged);
+            closeLogs();
+            assertEquals(backend, db.size(), open(backend).size());
+            clean();
+        }
+    }
+
+    @Test
+    public void resetDropsSnapshot() throws IOException {
+        for (String backend : BACKENDS) {
+            DBTreeStorage db = open(backend);
+            db.addChild(db.getTree(), UUID.randomUUID(), "checkpointed");
+            db.commit();
+            db.checkpoint();
+
+            db.reset();
+            db.commit();
+            closeLogs();
+
+            assertFalse(backend, Files.exists(snapshotPath()));
+            DBTreeStorage restored = open(backend);
+            assertEquals(backend, db.size(), restored.size());
+            assertEquals(backend, 0, restored.search("checkpointed", 10).size());
+            clean();
+        }
+    }
+
+    @Test
+    public void refusesCorruptSnapshotWhenLogWasTruncated() throws IOException {
+        for (String backend : BACKENDS) {
+            DBTreeStorage db = open(backend);
+            db.addChild(db.getTree(), UUID.randomUUID(), "checkpointed");
+            db.commit();
+            db.checkpoint();
+            closeLogs();
+
+            try (RandomAccessFile snapshot = new RandomAccessFile(snapshotPath().toFile(), "rw")) {
+                long middle = snapshot.length() / 2;
+                snapshot.seek(middle);
+                byte value = snapshot.readByte();
+                snapshot.seek(middle);
+                snapshot.writeByte(value ^ 0xFF);
+            }
+
+            try {
+                open(backend);
+                fail(backend + " started from a corrupt snapshot");
+            } catch (IllegalStateException expected) {
+                // the log no longer holds the whole tree, so there is nothing to fall back to
+            }
+            closeLogs();
+            clean();
+        }
+    }
+
+    private DBTreeStorage open(String backend) {
+        DbChangeLog log = new DbChangeLog(true, logPath().toString());
+        logs.add(log);
+        return new DBTreeStorage(
+                log,
+                new DbSnapshots(true, snapshotPath().toString()),
+                new DbTreeSeeder("default", 1, 1, 1, "uniform", 1, 1),
+                new TreeMetrics(),
+                backend,
+                10,
+                64
+        );
+    }
+
+    private void closeLogs() throws IOException {
+        for (DbChangeLog log : logs) {
+            log.close();
+        }
+        logs.clear();
+    }
+
+    private void clean() throws IOException {
+        closeLogs();
+        Files.deleteIfExists(logPath());
+        Files.deleteIfExists(snapshotPath());
+    }
+
+    private Path logPath() {
+        return dir.resolve("db.log");
+    }
+
+    private Path snapshotPath() {
+        return dir.resolve("db.snapshot");
+    }
+}
@@ -0,0 +1,66 @@
+package com.pes.treeview.core.persistent;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GuidTrieTest {
+
+    @Test
+    public void findsEveryPutGuid() {
+        Random random = new Random(42);
+        Map<UUID, Integer> expected = new HashMap<>();
+        GuidTrie<Integer> trie = GuidTrie.empty();
+        for (int i = 0; i < 20000; i++) {
+            UUID guid = new UUID(random.nextLong(), random.nextLong());
+            expected.put(guid, i);
+            trie = trie.put(guid, i);
+        }
+
+        assertEquals(expected.size(), trie.size());
+        for (Map.Entry<UUID, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), trie.get(entry.getKey()));
+        }
+        assertNull(trie.get(new UUID(random.nextLong(), random.nextLong())));
+    }
+
+    @Test
+    public void leavesPreviousVersionsUnchanged() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        GuidTrie<String> before = GuidTrie.<String>empty().put(first, "a");
+
+        GuidTrie<String> after = before.put(first, "b").put(second, "c");
+
+        assertEquals(1, before.size());
+        assertEquals("a", before.get(first));
+        assertNull(before.get(second));
+        assertEquals(2, after.size());
+        assertEquals("b", after.get(first));
+        assertEquals("c", after.get(second));
+    }
+
+    @Test
+    public void keepsGuidsWithCollidingHashes() {
+        // The trie hashes msb ^ lsb, so flipping the same bits in both halves gives a full hash collision.
+        long msb = 0x1234_5678_9ABC_DEF0L;
+        long lsb = 0x0FED_CBA9_8765_4321L;
+        GuidTrie<Integer> trie = GuidTrie.empty();
+        for (int i = 0; i < 8; i++) {
+            trie = trie.put(new UUID(msb ^ i, lsb ^ i), i);
+        }
+        trie = trie.put(new UUID(msb ^ 3, lsb ^ 3), 30);
+
+        assertEquals(8, trie.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i == 3 ? 30 : i, (int) trie.get(new UUID(msb ^ i, lsb ^ i)));
+        }
+        assertNull(trie.get(new UUID(msb ^ 8, lsb ^ 8)));
+    }
+}
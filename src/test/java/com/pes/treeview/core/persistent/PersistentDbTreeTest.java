@@ -0,0 +1,99 @@
+package com.pes.treeview.core.persistent;
+
+import com.pes.treeview.core.domain.DbNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PersistentDbTreeTest {
+
+    private static final UUID WORKSPACE = UUID.randomUUID();
+    private static final UUID OTHER_WORKSPACE = UUID.randomUUID();
+
+    private PersistentDbTree tree;
+
+    @Before
+    public void setUp() {
+        tree = new PersistentDbTree(UUID.randomUUID(), "root", 2);
+    }
+
+    @Test
+    public void revertRestoresPreviousVersion() {
+        UUID child = UUID.randomUUID();
+        tree.atomically(WORKSPACE, () -> {
+            tree.addChild(tree.getLatestRoot(), child, "child");
+            tree.setValue(tree.getLatestRoot(), "changed");
+        });
+        assertTrue(tree.find(child).isPresent());
+
+        assertTrue(tree.revert(WORKSPACE));
+
+        assertFalse(tree.find(child).isPresent());
+        assertEquals("root", tree.getRoot().getValue());
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    public void revertIsScopedToWorkspaceOfHeadVersion() {
+        tree.atomically(WORKSPACE, () -> tree.setValue(tree.getLatestRoot(), "first"));
+        tree.atomically(OTHER_WORKSPACE, () -> tree.setValue(tree.getLatestRoot(), "second"));
+
+        assertFalse(tree.canRevert(WORKSPACE));
+        assertFalse(tree.revert(WORKSPACE));
+        assertEquals("second", tree.getRoot().getValue());
+
+        assertTrue(tree.revert(OTHER_WORKSPACE));
+        assertEquals("first", tree.getRoot().getValue());
+        assertTrue(tree.canRevert(WORKSPACE));
+    }
+
+    @Test
+    public void keepsOnlyConfiguredNumberOfVersions() {
+        for (int i = 1; i <= 3; i++) {
+            String value = "value " + i;
+            tree.atomically(WORKSPACE, () -> tree.setValue(tree.getLatestRoot(), value));
+        }
+
+        assertTrue(tree.revert(WORKSPACE));
+        assertTrue(tree.revert(WORKSPACE));
+        assertFalse(tree.canRevert(WORKSPACE));
+        assertEquals("value 1", tree.getRoot().getValue());
+    }
+
+    @Test
+    public void failedTransactionPublishesNothing() {
+        UUID child = UUID.randomUUID();
+        try {
+            tree.atomically(WORKSPACE, () -> {
+                tree.addChild(tree.getLatestRoot(), child, "child");
+                throw new IllegalStateException("failed export");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // the working version is dropped
+        }
+
+        assertFalse(tree.find(child).isPresent());
+        assertFalse(tree.canRevert(WORKSPACE));
+    }
+
+    @Test
+    public void readersSeePublishedVersionDuringTransaction() {
+        UUID child = UUID.randomUUID();
+        DbNode published = tree.getRoot();
+        tree.atomically(WORKSPACE, () -> {
+            tree.addChild(tree.getLatestRoot(), child, "child");
+
+            assertEquals(0, published.getChildCount());
+            assertEquals(1, tree.getLatestRoot().getChildCount());
+        });
+
+        assertEquals(1, tree.getRoot().getChildCount());
+    }
+}
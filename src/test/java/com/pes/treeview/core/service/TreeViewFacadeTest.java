@@ -0,0 +1,172 @@
+package com.pes.treeview.core.service;
+
+import com.pes.treeview.core.domain.DbNode;
+import com.pes.treeview.core.domain.ExportConflict;
+import com.pes.treeview.core.domain.ExportReport;
+import com.pes.treeview.core.domain.SearchHit;
+import com.pes.treeview.core.metrics.TreeMetrics;
+import com.pes.treeview.core.persistent.CacheTreeStorage;
+import com.pes.treeview.core.persistent.DBTreeStorage;
+import com.pes.treeview.core.persistent.DbChangeLog;
+import com.pes.treeview.core.persistent.DbTreeSeeder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TreeViewFacadeTest {
+
+    private DBTreeStorage db;
+    private ExportPool exportPool;
+    private ExportExecutor exportExecutor;
+    private CacheTreeStorage firstCache;
+    private CacheTreeStorage secondCache;
+    private TreeViewFacade first;
+    private TreeViewFacade second;
+
+    @Before
+    public void setUp() {
+        TreeMetrics metrics = new TreeMetrics();
+        db = new DBTreeStorage(new DbChangeLog(false, ""), new DbTreeSeeder("default", 1, 1, 1, "uniform", 1, 1), "object");
+        exportPool = new ExportPool(false, 0);
+        exportExecutor = new ExportExecutor(false, 0, 0);
+        firstCache = new CacheTreeStorage();
+        secondCache = new CacheTreeStorage();
+        first = new TreeViewFacade(firstCache, db, exportPool, exportExecutor, metrics);
+        second = new TreeViewFacade(secondCache, db, exportPool, exportExecutor, metrics);
+        first.init();
+        second.init();
+    }
+
+    @After
+    public void tearDown() {
+        exportPool.shutdown();
+        exportExecutor.shutdown();
+    }
+
+    @Test
+    public void reportsValueChangedInDbSinceImport() {
+        DbNode node = dbNode("Node 1");
+        first.importToChache(node);
+        second.importToChache(node);
+
+        first.changeValueInCache(node, "first");
+        assertFalse(first.exportCacheToDb().hasConflicts());
+        second.changeValueInCache(node, "second");
+        ExportConflict conflict = single(second.exportCacheToDb());
+
+        assertEquals(ExportConflict.Type.CHANGED, conflict.getType());
+        assertEquals("second", conflict.getCacheValue());
+        assertEquals(Optional.of("first"), conflict.getDbValue());
+        assertTrue(conflict.getActualVersion().getAsLong() > conflict.getExpectedVersion());
+        assertFalse(conflict.getRemovedAncestor().isPresent());
+        assertEquals("first", node.getValue());
+    }
+
+    @Test
+    public void keepingCacheValueOverwritesDb() {
+        DbNode node = dbNode("Node 1");
+        first.importToChache(node);
+        second.importToChache(node);
+        first.changeValueInCache(node, "first");
+        first.exportCacheToDb();
+        second.changeValueInCache(node, "second");
+
+        second.resolveConflict(single(second.exportCacheToDb()), true);
+
+        assertFalse(second.exportCacheToDb().hasConflicts());
+        assertEquals("second", node.getValue());
+    }
+
+    @Test
+    public void reportsNodeRemovedInDb() {
+        DbNode node = dbNode("Node 1");
+        first.importToChache(node);
+        second.importToChache(node);
+        first.disableInCache(node);
+        first.exportCacheToDb();
+
+        second.changeValueInCache(node, "second");
+        ExportConflict conflict = single(second.exportCacheToDb());
+
+        assertEquals(ExportConflict.Type.REMOVED, conflict.getType());
+        assertEquals(Optional.of("Node 1"), conflict.getDbValue());
+    }
+
+    @Test
+    public void reportsAddUnderAncestorRemovedInDb() {
+        DbNode parent = dbNode("Node 3");
+        second.importToChache(parent);
+        first.importToChache(dbNode("Node 1"));
+        first.disableInCache(dbNode("Node 1"));
+        first.exportCacheToDb();
+
+        second.addNewToCache(parent, "added");
+        ExportConflict conflict = single(second.exportCacheToDb());
+
+        assertEquals(ExportConflict.Type.PARENT_REMOVED, conflict.getType());
+        assertEquals("added", conflict.getCacheValue());
+        assertEquals(Optional.of("Node 3"), conflict.getRemovedAncestor());
+        assertFalse(conflict.getDbValue().isPresent());
+        assertFalse(conflict.getActualVersion().isPresent());
+        assertEquals(0, db.search("added", 10).size());
+    }
+
+    @Test
+    public void reportsMoveUnderOwnSubtreeInDb() {
+        DbNode node1 = dbNode("Node 1");
+        DbNode node2 = dbNode("Node 2");
+        first.importToChache(node1);
+        first.importToChache(node2);
+        second.importToChache(node1);
+        second.importToChache(node2);
+
+        assertTrue(second.moveInCache(node1, node2));
+        assertTrue(first.moveInCache(node2, node1));
+        assertFalse(first.exportCacheToDb().hasConflicts());
+        ExportConflict conflict = single(second.exportCacheToDb());
+
+        assertEquals(ExportConflict.Type.CYCLE, conflict.getType());
+        assertEquals("Node 1", conflict.getCacheValue());
+        assertEquals(Optional.of("Node 2"), conflict.getNewParent());
+        assertFalse(conflict.getDbValue().isPresent());
+        assertTrue(db.isAncestor(node1, node2));
+    }
+
+    @Test
+    public void keepsUnrelatedEditsFromBothWorkspaces() {
+        DbNode node1 = dbNode("Node 1");
+        DbNode node2 = dbNode("Node 2");
+        first.importToChache(node1);
+        second.importToChache(node2);
+
+        first.changeValueInCache(node1, "first");
+        second.changeValueInCache(node2, "second");
+
+        assertFalse(first.exportCacheToDb().hasConflicts());
+        assertFalse(second.exportCacheToDb().hasConflicts());
+        assertEquals("first", node1.getValue());
+        assertEquals("second", node2.getValue());
+        assertEquals(0, firstCache.pendingCount() + secondCache.pendingCount());
+    }
+
+    private DbNode dbNode(String value) {
+        List<SearchHit> hits = db.search(value, 20);
+        return hits.stream()
+                .map(hit -> db.findNode(hit.getGuid()).get())
+                .filter(node -> node.getValue().equals(value))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No db node " + value));
+    }
+
+    private static ExportConflict single(ExportReport report) {
+        assertEquals(1, report.getConflicts().size());
+        return report.getConflicts().get(0);
+    }
+}